@@ -0,0 +1,134 @@
+package com.zimnicky.draughts;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Hot paths of the engine on fixed positions
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    static final String MIDDLEGAME = "B:W13,17,19,20,21,22,24,25,27,29,32:B4,5,6,7,8,9,10,11,12,14,15";
+    static final String ENDGAME = "B:WK1,K30,19:BK4,K28,10";
+
+    @Param({"middlegame", "endgame"})
+    public String position;
+
+    private Board board;
+    private SearchBoard searchBoard;
+    private Game rules;
+    private ABAIPlayer player;
+    private ArrayList<Game.Move> moves;
+    private int[] packedMoves;
+    private int packedCount;
+    private int[] sequenceMoves;
+    private int[] sequenceCaptures;
+    private int sequenceCount;
+
+    @Setup
+    public void setUp() {
+        board = Board.fromFen(position.equals("endgame") ? ENDGAME : MIDDLEGAME);
+        searchBoard = new SearchBoard(board, ABAIPlayer.MAX_PLY);
+        rules = new Game();
+        player = new ABAIPlayer();
+        moves = rules.getAllAvailableMoves(board, board.getTurn(), null);
+        packedMoves = new int[MoveStack.MAX_MOVES];
+        packedCount = MoveGenerator.generate(board, board.getTurn(), -1, packedMoves);
+        sequenceMoves = new int[MoveStack.MAX_MOVES];
+        sequenceCaptures = new int[MoveStack.MAX_MOVES];
+        sequenceCount = generateSequences();
+    }
+
+    @Benchmark
+    public void getCell(Blackhole bh) {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                bh.consume(board.getCell(row, col));
+            }
+        }
+    }
+
+    @Benchmark
+    public void setCell() {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                board.setCell(row, col, board.getCell(row, col));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean canBeatSide() {
+        return rules.canBeat(board.getTurn(), board);
+    }
+
+    @Benchmark
+    public void canBeatCell(Blackhole bh) {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                bh.consume(rules.canBeat(row, col, board));
+            }
+        }
+    }
+
+    @Benchmark
+    public void canMove(Blackhole bh) {
+        for (Game.Move move : moves) {
+            bh.consume(rules.canMove(move, null, board));
+        }
+    }
+
+    @Benchmark
+    public ArrayList<Game.Move> getAllAvailableMoves() {
+        return rules.getAllAvailableMoves(board, board.getTurn(), null);
+    }
+
+    @Benchmark
+    public int generatePacked() {
+        return MoveGenerator.generate(board, board.getTurn(), -1, packedMoves);
+    }
+
+    @Benchmark
+    public int generateSequences() {
+        return MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                board.isWhiteTurn(), -1, sequenceMoves, sequenceCaptures);
+    }
+
+    @Benchmark
+    public void makeUndo() {
+        for (int i = 0; i < packedCount; i++) {
+            searchBoard.make(packedMoves[i]);
+            searchBoard.undo();
+        }
+    }
+
+    @Benchmark
+    public void makeUndoSequence() {
+        for (int i = 0; i < sequenceCount; i++) {
+            searchBoard.make(sequenceMoves[i], sequenceCaptures[i]);
+            searchBoard.undo();
+        }
+    }
+
+    @Benchmark
+    public int calcPositionRating() {
+        return player.calcPositionRating(searchBoard, searchBoard.getTurn());
+    }
+}
@@ -0,0 +1,52 @@
+package com.zimnicky.draughts;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// ABAIPlayer.search to a fixed depth, every invocation starts with a new player: an empty
+// transposition table, no killers and no history, so all invocations search the same tree
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"middlegame", "endgame"})
+    public String position;
+
+    @Param({"6", "8"})
+    public byte depth;
+
+    private SearchBoard board;
+    private ABAIPlayer player;
+
+    @Setup
+    public void setUp() {
+        board = new SearchBoard(Board.fromFen(position.equals("endgame") ? EngineBenchmark.ENDGAME : EngineBenchmark.MIDDLEGAME),
+                ABAIPlayer.MAX_PLY);
+    }
+
+    @Setup(Level.Invocation)
+    public void newPlayer() {
+        player = new ABAIPlayer(depth, 16);
+    }
+
+    @Benchmark
+    public int search() {
+        return player.search(board, depth, 0, -ABAIPlayer.INFINITY, ABAIPlayer.INFINITY);
+    }
+}
@@ -1,21 +1,87 @@
 package com.zimnicky.draughts;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
 public class ABAIPlayer extends Player{
 
-
-    protected class SearchResult{
-        Game.Move move;
-        int value;
-        SearchResult(int val, Game.Move move){
-            value = val;
-            this.move = move;
-        }
+    public interface SearchListener {
+        // called after every search, on the thread of makeMove
+        void searchFinished(ABAIPlayer player, Game.Move move, SearchStatistics statistics);
     }
 
-    protected byte depth = 5;
+    protected static final int MAX_PLY = 64;
+    protected static final int WIN = 1000000;           // rating of a won position, less the distance to the win
+    protected static final int INFINITY = WIN + 1;
+    protected static final int KNOWN_WIN = WIN - MAX_PLY;   // tablebase wins are rated from here down
+    protected static final int WON = KNOWN_WIN - 512;       // ratings above are wins, less the distance
+    protected static final int DEFAULT_TABLE_SIZE = 4;  // MB
+    protected static final int CHECK_INTERVAL = 1023;   // nodes between checks of the budget
+    protected static final int ASPIRATION_WINDOW = 25;  // around the rating of the previous iteration
+
+    // selective search, quiet moves only: late moves are searched with a reduced depth first,
+    // near the leaves moves are pruned when the static rating is too far below the window;
+    // the defaults of the settings
+    protected static final int LMR_DEPTH = 3;           // minimal depth of a reduced node
+    protected static final int LMR_MOVES = 3;           // moves searched in full before the reductions start
+    protected static final int[] FUTILITY_MARGIN = {0, 200, 400};  // by depth
+    protected static final int RAZOR_DEPTH = 3;
+    protected static final int RAZOR_MARGIN = 500;
+
+    // move ordering: hash move, captures by the beaten pieces, quiet promotions, killers, quiet moves by history
+    protected static final int HASH_MOVE_SCORE = 1 << 30;
+    protected static final int CAPTURE_SCORE = 1 << 29;
+    protected static final int KILLER_SCORE = 1 << 28;
+    protected static final int HISTORY_LIMIT = 1 << 20;
+
+    protected byte depth = 5;           // maximal depth of iterative deepening
+    protected boolean lateMoveReductions = true;
+    protected boolean futilityPruning = true;
+    protected boolean razoring = true;
+    protected int reductionDepth = LMR_DEPTH;
+    protected int reductionMoves = LMR_MOVES;
+    protected int[] futilityMargins = FUTILITY_MARGIN;
+    protected int razorDepth = RAZOR_DEPTH;
+    protected int razorMargin = RAZOR_MARGIN;
+    protected long timeLimit;           // ms per move, 0 -- no limit
+    protected long nodeLimit;           // nodes per move, 0 -- no limit
     protected Game game;
+    protected MoveStack moveStack = new MoveStack(MAX_PLY);
+    protected TranspositionTable table;
+    protected Tablebase tablebase;      // null if there is none
+    protected OpeningBook openingBook;  // null if there is none
+    protected Random random = new Random();     // chooses among the book moves
+    protected int bestMove;             // best move of the root in the current iteration
+    protected int bestCaptured;         // beaten pieces of bestMove
+    protected int resultCaptured;       // beaten pieces of the move returned by searchRoot
+    protected int[] plannedHops = new int[MoveGenerator.SQUARES];   // of the beat sequence being played
+    protected int plannedCount;
+    protected int plannedNext;          // next hop to play
+    protected long plannedHash;         // of the position before the next hop
+    protected int[][] killers = new int[MAX_PLY][2];    // quiet moves which caused a cutoff at the ply
+    protected int[] history = new int[2 * MoveGenerator.SQUARES * MoveGenerator.SQUARES];  // side, from, to
+    protected int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];  // principal variation from the ply on
+    protected int[] pvLength = new int[MAX_PLY + 1];
+
+    protected SearchStatistics statistics = new SearchStatistics();     // of the current search in this thread
+    // of the last move, all threads; a new object is published after every move and never changed,
+    // so it can be read from any thread
+    protected volatile SearchStatistics lastStatistics = new SearchStatistics();
+    protected SearchListener listener;
+    protected long deadline;            // System.nanoTime() when the search has to stop
+    protected boolean stopped;
+    protected boolean canStop;          // the search isn't stopped before the first iteration is complete
+
+    // Lazy SMP: helpers search the same position in their own threads and share the table with this player
+    protected int threads = 1;
+    protected ABAIPlayer[] helpers;
+    protected volatile boolean abort;   // set by the main search when it is done
+
+    // pondering: the position after the own move is searched in the background while the opponent thinks
+    protected boolean ponder;
+    protected Thread ponderThread;      // null if there is no pondering
+    protected volatile boolean pondering;   // the search has no limits but the depth
+    protected boolean pondered;         // the table is filled by pondering, the next search continues its age
 
     protected Color opponentsColor(Color color){
         if (color == Color.BLACK){
@@ -25,88 +91,775 @@ public class ABAIPlayer extends Player{
     }
 
     protected int calcPositionRating(Board board, Color color){
-        int res = 0;
-        int t;
-        for (int i = 0; i < board.getSize(); i++){
-            for (int j = 0 ; j < board.getSize(); j ++) {
-                Board.Cell cell = board.getCell(i, j);
-                if (!cell.isEmpty() && cell != Board.Cell.INVALID) {
-                    if (cell.sameColor(color)) {
-                        if (cell.isQueen()) {
-                            t = 5;
-                        } else {
-                            t = 1;
-                        }
-                    } else if (cell.isQueen()) {
-                            t = -5;
-                    } else {
-                            t = -1;
-                    }
-                    res += t;
-                }
+        int rating = Evaluation.evaluate(board);
+        return color == Color.WHITE ? rating : -rating;
+    }
+
+    // win ratings are stored relative to the position, not to the root
+    protected static int scoreToTable(int score, int ply) {
+        if (score > WON) {
+            return score + ply;
+        }
+        if (score < -WON) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    protected static int scoreFromTable(int score, int ply) {
+        if (score > WON) {
+            return score - ply;
+        }
+        if (score < -WON) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    // rating of a tablebase value, the wins found by the search are rated higher
+    protected static int tablebaseScore(int value, int ply) {
+        if (Tablebase.isWin(value)) {
+            return KNOWN_WIN - ply - Tablebase.getDistance(value);
+        }
+        if (Tablebase.isLoss(value)) {
+            return -KNOWN_WIN + ply + Tablebase.getDistance(value);
+        }
+        return 0;
+    }
+
+    protected static int historyIndex(boolean white, int move) {
+        return ((white ? 0 : MoveGenerator.SQUARES) + PackedMove.from(move)) * MoveGenerator.SQUARES + PackedMove.to(move);
+    }
+
+    protected void scoreMoves(SearchBoard board, int ply, int count, int hashMove) {
+        int[] moves = moveStack.getMoves(ply);
+        int[] scores = moveStack.getScores(ply);
+        boolean white = board.isWhiteTurn();
+        int queens = board.getQueens();
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int captured = moveStack.getCaptured(ply, i);
+            int score;
+            if (move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (captured != 0) {
+                score = CAPTURE_SCORE + (Integer.bitCount(captured) << 8) + (Integer.bitCount(captured & queens) << 4)
+                        + (PackedMove.isPromotion(move) ? 1 : 0);
+            } else if (PackedMove.isPromotion(move)) {
+                score = KILLER_SCORE + 2;
+            } else if (move == killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = history[historyIndex(white, move)];
             }
+            scores[i] = score;
+        }
+    }
+
+    // the move is the best one of the ply so far, it is followed by the variation of the next ply
+    protected void updatePv(int ply, int move) {
+        int[] line = pv[ply];
+        line[0] = move;
+        System.arraycopy(pv[ply + 1], 0, line, 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    // a quiet move caused a cutoff
+    protected void updateOrdering(boolean white, int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int i = historyIndex(white, move);
+        history[i] += depth * depth;
+        if (history[i] > HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    protected void ageHistory() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
         }
-        return res;
     }
 
-    protected SearchResult search(Board board, Color playerColor, Game.Move lastMove, byte depth, int lowerBound, int upperBound){
+    // returns the rating of the position for the side to move, the best move of the root is stored in bestMove
+    protected int search(SearchBoard board, byte depth, int ply, int lowerBound, int upperBound){
 
-        if (depth <= 0 && (lastMove == null)) {
-            return new SearchResult(calcPositionRating(board, playerColor), null);
+        pvLength[ply] = 0;
+        if (depth <= 0) {
+            return quiescence(board, ply, lowerBound, upperBound);
         }
 
-        ArrayList<Game.Move> moves;
-        moves = game.getAllAvailableMoves(board, playerColor, lastMove);
+        SearchStatistics statistics = this.statistics;
+        statistics.nodes++;
+        if ((statistics.nodes & CHECK_INTERVAL) == 0) {
+            checkBudget();
+        }
+        if (stopped) {
+            return 0;
+        }
 
+        Color playerColor = board.getTurn();
+        int continuation = board.getContinuation();
 
-        SearchResult best = new SearchResult(Integer.MIN_VALUE, null);
+        if (tablebase != null && ply > 0 && continuation < 0) {
+            int value = tablebase.probe(board);
+            if (value != Tablebase.NOT_FOUND) {
+                statistics.tablebaseHits++;
+                return tablebaseScore(value, ply);
+            }
+        }
 
-        if (moves != null) {
-            for (Game.Move move : moves) {
-                if (depth > 0 || game.canBeat(move.getStartRow(), move.getStartCol())) {
-                    Board nextPos = new Board(board);
-                    game.makeMove(nextPos, move);
-                    int val;
-                    if (move.getResult() == Game.MoveResult.BEAT && game.canBeat(move.getDistRow(), move.getDistCol(), nextPos)) {
-                        val = search(nextPos, playerColor, move, (byte) (depth - 1), lowerBound, upperBound).value;
-                    } else {
-                        val = -search(nextPos, opponentsColor(playerColor), null, (byte) (depth - 1), -upperBound, -lowerBound).value;
-                    }
+        if (ply >= MAX_PLY) {
+            return calcPositionRating(board, playerColor);
+        }
 
-                    if (best.value < val) {
-                        best.value = val;
-                        best.move = move;
-                    }
+        long hash = board.getHash();
+        int hashMove = PackedMove.NONE;
+        long entry = table.probe(hash);
+        statistics.tableProbes++;
+        if (entry != TranspositionTable.MISS) {
+            statistics.tableHits++;
+            hashMove = TranspositionTable.getMove(entry);
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                int score = scoreFromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= upperBound)
+                        || (bound == TranspositionTable.UPPER && score <= lowerBound)) {
+                    return score;
+                }
+            }
+        }
 
-                    if (lowerBound < val) {
-                        lowerBound = val;
-                    }
+        int count = moveStack.generateSequences(ply, board, board.isWhiteTurn(), continuation);
+        if (count == 0) {
+            return -WIN + ply;  // a player who can't move loses
+        }
 
-                    if (lowerBound >= upperBound) {
-                        return best;
-                    }
+        // beats are compulsory, so a position with them is never pruned nor razored
+        boolean quietNode = !PackedMove.isCapture(moveStack.getMove(ply, 0));
+        boolean selective = quietNode && ply > 0 && upperBound - lowerBound == 1 && Math.abs(lowerBound) < WON;
+        boolean futile = false;     // quiet moves are pruned, their rating is taken as futilityRating
+        int futilityRating = 0;
+        boolean canRazor = razoring && depth == razorDepth;
+        boolean canPrune = futilityPruning && depth < futilityMargins.length;
+        if (selective && (canRazor || canPrune)) {
+            int rating = calcPositionRating(board, playerColor);
+            if (canRazor && rating + razorMargin <= lowerBound) {
+                int razorBound = lowerBound - razorMargin;
+                int val = razor(board, ply, count, razorBound);
+                if (stopped) {
+                    return 0;
+                }
+                if (val <= razorBound) {
+                    statistics.pruned++;
+                    return val;
                 }
             }
-        } else if (color != playerColor){
-            return new SearchResult(Integer.MAX_VALUE, null);
+            if (canPrune && rating + futilityMargins[depth] <= lowerBound) {
+                futile = true;
+                futilityRating = rating + futilityMargins[depth];
+            }
         }
+
+        scoreMoves(board, ply, count, hashMove);
+
+        int originalLowerBound = lowerBound;
+        int best = -INFINITY;
+        int bestMoveHere = PackedMove.NONE;
+
+        for (int i = 0; i < count; i++) {
+            int move = moveStack.pick(ply, i);
+            int captured = moveStack.getCaptured(ply, i);
+            boolean quiet = quietNode && !PackedMove.isPromotion(move);
+            if (futile && quiet) {
+                statistics.pruned++;
+                if (best < futilityRating) {
+                    best = futilityRating;
+                }
+                continue;
+            }
+            int reduction = 0;
+            if (selective && lateMoveReductions && quiet && i >= reductionMoves && depth >= reductionDepth
+                    && moveStack.getScores(ply)[i] < KILLER_SCORE) {
+                reduction = 1;
+                statistics.reduced++;
+            }
+
+            board.make(move, captured);
+            int val;
+            if (i == 0) {
+                val = -search(board, (byte) (depth - 1), ply + 1, -upperBound, -lowerBound);
+            } else {
+                // principal variation search: the other moves are expected to be worse, a null window
+                // proves it, and only a move which turns out better is searched again with the full window;
+                // a reduced move is searched again to the full depth first
+                val = -search(board, (byte) (depth - 1 - reduction), ply + 1, -lowerBound - 1, -lowerBound);
+                if (reduction > 0 && val > lowerBound && !stopped) {
+                    val = -search(board, (byte) (depth - 1), ply + 1, -lowerBound - 1, -lowerBound);
+                }
+                if (val > lowerBound && val < upperBound && !stopped) {
+                    val = -search(board, (byte) (depth - 1), ply + 1, -upperBound, -lowerBound);
+                }
+            }
+            board.undo();
+
+            if (stopped) {
+                return 0;
+            }
+
+            if (best < val) {
+                best = val;
+                bestMoveHere = move;
+                if (ply == 0) {
+                    bestMove = move;
+                    bestCaptured = captured;
+                }
+            }
+
+            if (lowerBound < val) {
+                lowerBound = val;
+                updatePv(ply, move);
+            }
+
+            if (lowerBound >= upperBound) {
+                statistics.cutoffs++;
+                if (i == 0) {
+                    statistics.firstMoveCutoffs++;
+                }
+                if (!PackedMove.isCapture(move)) {
+                    updateOrdering(board.isWhiteTurn(), move, depth, ply);
+                }
+                break;
+            }
+        }
+
+        int bound = TranspositionTable.UPPER;
+        if (best >= upperBound) {
+            bound = TranspositionTable.LOWER;
+        } else if (best > originalLowerBound) {
+            bound = TranspositionTable.EXACT;
+        }
+        table.store(hash, bestMoveHere, scoreToTable(best, ply), bound, depth);
         return best;
     }
 
 
-    public ABAIPlayer(){}
+    // Verifies razoring: every move followed by the beats of the opponent (quiescence) in a null window
+    // at bound. Returns the best rating, at most bound if the node really fails low, above it otherwise.
+    // The side to move has no beats, so quiescence of the node itself would only stand pat.
+    protected int razor(SearchBoard board, int ply, int count, int bound) {
+        int best = -INFINITY;
+        for (int i = 0; i < count && best <= bound; i++) {
+            board.make(moveStack.getMove(ply, i), moveStack.getCaptured(ply, i));
+            int val = -quiescence(board, ply + 1, -bound - 1, -bound);
+            board.undo();
+            if (stopped) {
+                return 0;
+            }
+            best = Math.max(best, val);
+        }
+        return best;
+    }
+
+    // Searches only the beats below the nominal depth. Beats are compulsory, so the side to move
+    // stands pat (takes the static rating) only in a position without them.
+    protected int quiescence(SearchBoard board, int ply, int lowerBound, int upperBound) {
+        pvLength[ply] = 0;
+        SearchStatistics statistics = this.statistics;
+        statistics.nodes++;
+        statistics.quiescenceNodes++;
+        if ((statistics.nodes & CHECK_INTERVAL) == 0) {
+            checkBudget();
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        Color playerColor = board.getTurn();
+        int continuation = board.getContinuation();
+        if (tablebase != null && continuation < 0) {
+            int value = tablebase.probe(board);
+            if (value != Tablebase.NOT_FOUND) {
+                statistics.tablebaseHits++;
+                return tablebaseScore(value, ply);
+            }
+        }
+        if (ply >= MAX_PLY) {
+            return calcPositionRating(board, playerColor);
+        }
+
+        int count = moveStack.generateSequences(ply, board, board.isWhiteTurn(), continuation);
+        if (count == 0) {
+            return -WIN + ply;
+        }
+        if (!PackedMove.isCapture(moveStack.getMove(ply, 0))) {
+            return calcPositionRating(board, playerColor);     // stand pat
+        }
+        scoreMoves(board, ply, count, PackedMove.NONE);
+
+        int best = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            int move = moveStack.pick(ply, i);
+            board.make(move, moveStack.getCaptured(ply, i));
+            int val = -quiescence(board, ply + 1, -upperBound, -lowerBound);
+            board.undo();
+
+            if (stopped) {
+                return 0;
+            }
+            if (best < val) {
+                best = val;
+            }
+            if (lowerBound < val) {
+                lowerBound = val;
+                updatePv(ply, move);
+            }
+            if (lowerBound >= upperBound) {
+                statistics.cutoffs++;
+                if (i == 0) {
+                    statistics.firstMoveCutoffs++;
+                }
+                break;
+            }
+        }
+        return best;
+    }
+
+    protected void checkBudget() {
+        if (abort || (canStop && !pondering && ((timeLimit > 0 && System.nanoTime() - deadline >= 0) || (nodeLimit > 0 && statistics.nodes >= nodeLimit)))) {
+            stopped = true;
+        }
+    }
+
+    // helper of the parallel search
+    protected ABAIPlayer(ABAIPlayer main){
+        table = main.table;
+        tablebase = main.tablebase;
+    }
+
+    public ABAIPlayer(){
+        table = new TranspositionTable(DEFAULT_TABLE_SIZE);
+    }
 
     public ABAIPlayer(byte depth){
+        this(depth, DEFAULT_TABLE_SIZE);
+    }
+
+    // tableSize is the size of the transposition table in MB
+    public ABAIPlayer(byte depth, int tableSize){
         this.depth = depth;
+        table = new TranspositionTable(tableSize);
+    }
+
+    public byte getDepth() {
+        return depth;
+    }
+
+    public void setDepth(byte depth) {
+        this.depth = depth;
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    // milliseconds per move, 0 -- search to the full depth
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    // nodes per move, 0 -- search to the full depth
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // number of threads searching each move
+    public void setThreads(int threads) {
+        this.threads = Math.max(threads, 1);
+    }
+
+    // nodes of the last search in all threads
+    public long getNodes() {
+        return lastStatistics.nodes;
+    }
+
+    public SearchStatistics getLastStatistics() {
+        return new SearchStatistics(lastStatistics);
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    // endgame tablebase probed in the search, null -- none
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    // book moves are played without a search, null -- no book
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    public boolean isLateMoveReductions() {
+        return lateMoveReductions;
+    }
+
+    // late quiet moves are searched one ply less unless they turn out better than the best one
+    public void setLateMoveReductions(boolean lateMoveReductions) {
+        this.lateMoveReductions = lateMoveReductions;
+    }
+
+    public boolean isFutilityPruning() {
+        return futilityPruning;
+    }
+
+    // quiet moves near the leaves are not searched when the static rating is hopeless
+    public void setFutilityPruning(boolean futilityPruning) {
+        this.futilityPruning = futilityPruning;
+    }
+
+    public boolean isRazoring() {
+        return razoring;
+    }
+
+    // a node far below the window is cut when none of its moves followed by the beats of the opponent reaches it
+    public void setRazoring(boolean razoring) {
+        this.razoring = razoring;
+    }
+
+    public int getReductionDepth() {
+        return reductionDepth;
+    }
+
+    // nodes of a smaller depth have no reductions
+    public void setReductionDepth(int reductionDepth) {
+        this.reductionDepth = reductionDepth;
+    }
+
+    public int getReductionMoves() {
+        return reductionMoves;
+    }
+
+    // moves searched to the full depth before the reductions start
+    public void setReductionMoves(int reductionMoves) {
+        this.reductionMoves = reductionMoves;
+    }
+
+    public int[] getFutilityMargins() {
+        return futilityMargins.clone();
+    }
+
+    // margins by depth, nodes of the depth of the array length and deeper are not pruned
+    public void setFutilityMargins(int[] futilityMargins) {
+        this.futilityMargins = futilityMargins.clone();
+    }
+
+    public int getRazorDepth() {
+        return razorDepth;
+    }
+
+    // only nodes of this depth are razored
+    public void setRazorDepth(int razorDepth) {
+        this.razorDepth = razorDepth;
+    }
+
+    public int getRazorMargin() {
+        return razorMargin;
+    }
+
+    // below the window by the static rating
+    public void setRazorMargin(int razorMargin) {
+        this.razorMargin = razorMargin;
+    }
+
+    public boolean isPonder() {
+        return ponder;
+    }
+
+    // search on the opponent's time after every own move
+    public void setPonder(boolean ponder) {
+        this.ponder = ponder;
+        if (!ponder) {
+            stopPondering();
+        }
+    }
+
+    // Searches the position, the opponent to move, in the background until stopPondering or one ply
+    // over the full depth. All replies of the opponent are searched, so the table has the positions
+    // of the next search whatever the reply is.
+    public synchronized void startPondering(Board position) {
+        stopPondering();
+        final Board board = new Board(position);
+        pondering = true;
+        ponderThread = new Thread(new Runnable() {
+            public void run() {
+                searchThreads(board);
+            }
+        });
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    public synchronized void stopPondering() {
+        if (ponderThread == null) {
+            return;
+        }
+        abort = true;
+        try {
+            ponderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+        pondering = false;
+        pondered = true;
+        abort = false;
+    }
+
+    public SearchListener getSearchListener() {
+        return listener;
+    }
+
+    public void setSearchListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    // iterative deepening from firstDepth, returns the best move of the deepest complete iteration,
+    // a whole beat sequence with its beaten pieces in resultCaptured
+    protected int searchRoot(SearchBoard board, int firstDepth) {
+        statistics.clear();
+        stopped = false;
+        canStop = false;
+        deadline = System.nanoTime() + timeLimit * 1000000L;
+        for (int[] k : killers) {
+            k[0] = PackedMove.NONE;
+            k[1] = PackedMove.NONE;
+        }
+        ageHistory();
+
+        resultCaptured = 0;
+        if (moveStack.generateSequences(0, board, board.isWhiteTurn(), board.getContinuation()) == 1) {
+            resultCaptured = moveStack.getCaptured(0, 0);
+            return moveStack.getMove(0, 0);
+        }
+
+        int result = PackedMove.NONE;
+        int value = 0;
+        int lastDepth = pondering ? depth + 1 : depth;     // the own positions after the reply to the full depth
+        for (byte d = (byte) firstDepth; d <= lastDepth; d++) {
+            // aspiration: the rating is expected near the previous one, the window is widened when it isn't
+            int window = ASPIRATION_WINDOW;
+            int lowerBound = -INFINITY;
+            int upperBound = INFINITY;
+            if (d > firstDepth && Math.abs(value) < WON) {
+                lowerBound = value - window;
+                upperBound = value + window;
+            }
+            while (true) {
+                bestMove = PackedMove.NONE;
+                value = search(board, d, 0, lowerBound, upperBound);
+                if (stopped || (value > lowerBound && value < upperBound)) {
+                    break;
+                }
+                window *= 4;
+                if (value <= lowerBound) {
+                    lowerBound = Math.max(value - window, -INFINITY);
+                } else {
+                    upperBound = Math.min(value + window, INFINITY);
+                }
+            }
+            if (stopped) {
+                break;
+            }
+            result = bestMove;
+            resultCaptured = bestCaptured;
+            statistics.depth = d;
+            statistics.score = value;
+            statistics.pv = Arrays.copyOf(pv[0], pvLength[0]);
+            canStop = true;
+            if (Math.abs(value) > KNOWN_WIN) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    // rating of the position for the side to move by iterative deepening to the given depth, one thread;
+    // at depth 0 it is the static rating after the beats are played out
+    protected int evaluate(Board position, byte depth) {
+        SearchBoard board = new SearchBoard(position, MAX_PLY);
+        statistics.clear();
+        stopped = false;
+        canStop = false;
+        table.newSearch();
+        int value = quiescence(board, 0, -INFINITY, INFINITY);
+        for (byte d = 1; d <= depth; d++) {
+            value = search(board, d, 0, -INFINITY, INFINITY);
+        }
+        return value;
+    }
+
+    // searches the position with all threads, returns the packed best move (see searchRoot)
+    protected int think(Board position) {
+        long start = System.nanoTime();
+        int move = searchThreads(position);
+        SearchStatistics total = new SearchStatistics(statistics);
+        if (threads > 1) {
+            for (ABAIPlayer helper : helpers) {
+                total.add(helper.statistics);
+            }
+        }
+        total.time = System.nanoTime() - start;
+        lastStatistics = total;
+        return move;
+    }
+
+    protected int searchThreads(Board position) {
+        SearchBoard board = new SearchBoard(position, MAX_PLY);
+        if (!pondered) {
+            table.newSearch();
+        }
+        pondered = false;
+        if (threads <= 1) {
+            return searchRoot(board, 1);
+        }
+
+        if (helpers == null || helpers.length != threads - 1) {
+            helpers = new ABAIPlayer[threads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new ABAIPlayer(this);
+            }
+        }
+        Thread[] workers = new Thread[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            final ABAIPlayer helper = helpers[i];
+            final SearchBoard helperBoard = new SearchBoard(position, MAX_PLY);
+            final int firstDepth = 1 + ((i + 1) & 1);   // every second helper is one ply ahead
+            helper.game = game;
+            helper.tablebase = tablebase;
+            helper.depth = depth;
+            helper.pondering = pondering;
+            helper.lateMoveReductions = lateMoveReductions;
+            helper.futilityPruning = futilityPruning;
+            helper.razoring = razoring;
+            helper.reductionDepth = reductionDepth;
+            helper.reductionMoves = reductionMoves;
+            helper.futilityMargins = futilityMargins;
+            helper.razorDepth = razorDepth;
+            helper.razorMargin = razorMargin;
+            helper.abort = false;
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    helper.searchRoot(helperBoard, firstDepth);
+                }
+            });
+            workers[i].start();
+        }
+
+        int move = searchRoot(board, 1);
+
+        for (ABAIPlayer helper : helpers) {
+            helper.abort = true;
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return move;
+    }
+
+    private static long nextHash(Board board, int move) {
+        Board next = new Board(board);
+        next.makeMove(move);
+        return next.getHash();
     }
 
     public Game.Move makeMove(Game game, Game.Move lastMove) {
+        stopPondering();
         this.game = game;
         Board board = game.getBoard();
 
-        SearchResult best = search(board, color, lastMove, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        int continuation = -1;
+        if (lastMove != null && lastMove.getResult() == Game.MoveResult.BEAT) {
+            continuation = MoveGenerator.square(lastMove.getDistRow(), lastMove.getDistCol());
+        }
+
+        board.setTurn(color, continuation);
+
+        int move = PackedMove.NONE;
+        if (plannedNext < plannedCount) {
+            if (board.getHash() == plannedHash) {
+                move = plannedHops[plannedNext++];
+                plannedHash = nextHash(board, move);
+                lastStatistics = new SearchStatistics();
+            } else {
+                plannedCount = 0;
+            }
+        }
+        if (move == PackedMove.NONE && openingBook != null) {
+            move = openingBook.choose(board, random);
+            if (move != PackedMove.NONE) {
+                lastStatistics = new SearchStatistics();
+            }
+        }
+        if (move == PackedMove.NONE) {
+            move = think(board);
+            if (move != PackedMove.NONE) {
+                // the game takes a beat sequence hop by hop, the rest of it is played without a search
+                plannedCount = MoveGenerator.hops(board, move, resultCaptured, plannedHops);
+                if (plannedCount == 0) {
+                    throw new IllegalStateException("No hops of the beat sequence " + PackedMove.toString(move));
+                }
+                move = plannedHops[0];
+                plannedNext = 1;
+                plannedHash = nextHash(board, move);
+            }
+        }
+        Game.Move result = (move == PackedMove.NONE) ? null : PackedMove.toMove(move);
+        if (listener != null) {
+            listener.searchFinished(this, result, getLastStatistics());
+        }
+        if (ponder && move != PackedMove.NONE) {
+            Board next = new Board(board);
+            next.makeMove(move);
+            if (next.getContinuation() < 0) {
+                startPondering(next);
+            }
+        }
+        return result;
+    }
 
-        return best.move;
+    // the search runs on a thread of its own, so the game's executor is free while the engine thinks
+    @Override
+    public void requestMove(final Game game, final Game.Move lastMove, final MoveCallback callback) {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                callback.moveMade(makeMove(game, lastMove));
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
     }
 }
 
@@ -36,11 +36,25 @@ public class Board {
     private int whiteCells; // 0 -- empty or black piece, 1 -- whitePiece
     private int queens;     // 0 -- empty or not queen, 1 -- queen
 
+    private boolean whiteTurn;
+    private int continuation;   // square of the piece which has to go on beating, -1 if there is none
+    private long hash;
+    private int pieceSquare;    // sum of Evaluation.PIECE_SQUARE over the pieces
+
+    // undo record: move bits | beaten piece was a queen | previous continuation + 1 | previous turn
+    private static final int CAPTURED_QUEEN = 1 << 17;
+    private static final int CONTINUATION_SHIFT = 18;
+    private static final int WHITE_TURN = 1 << 24;
+
     private void startPosition() {
 
         whiteCells = 0b11111111111100000000000000000000;
         blackCells = 0b00000000000000000000111111111111;
         queens     = 0;
+        whiteTurn  = true;
+        continuation = -1;
+        hash = computeHash();
+        pieceSquare = Evaluation.pieceSquare(whiteCells, blackCells, queens);
 
        // whiteCells = 0b00000000010000000000000000000000;
        // blackCells = 0b00000000000000001000000000000000;
@@ -56,6 +70,36 @@ public class Board {
 
     }
 
+    private long computeHash() {
+        long h = 0;
+        for (int sq = 0; sq < MoveGenerator.SQUARES; sq++) {
+            h ^= pieceKey(sq);
+        }
+        if (!whiteTurn) {
+            h ^= Zobrist.BLACK_TURN;
+        }
+        if (continuation >= 0) {
+            h ^= Zobrist.CONTINUATION[continuation];
+        }
+        return h;
+    }
+
+    private long pieceKey(int square) {
+        int mask = 1 << square;
+        if (((whiteCells | blackCells) & mask) == 0) {
+            return 0;
+        }
+        return Zobrist.PIECES[Zobrist.piece((whiteCells & mask) != 0, (queens & mask) != 0)][square];
+    }
+
+    private int pieceSquareValue(int square) {
+        int mask = 1 << square;
+        if (((whiteCells | blackCells) & mask) == 0) {
+            return 0;
+        }
+        return Evaluation.PIECE_SQUARE[Zobrist.piece((whiteCells & mask) != 0, (queens & mask) != 0)][square];
+    }
+
     private int getCellMask(int row, int col){
         return 1 << (row*(defaultSize >> 1) + (col >> 1));
     }
@@ -64,10 +108,126 @@ public class Board {
         startPosition();
     }
 
+    // position in FEN of PDN, e.g. "W:W21,22,K23:B1-12"; squares are numbered 1-32
+    // from row 0 to row 7, left to right, "K" marks a queen
+    public static Board fromFen(String fen) {
+        String[] parts = fen.trim().split(":");
+        if (parts.length < 1 || (!parts[0].equals("W") && !parts[0].equals("B"))) {
+            throw new IllegalArgumentException("Wrong FEN: " + fen);
+        }
+        Board board = new Board();
+        board.whiteCells = 0;
+        board.blackCells = 0;
+        board.queens = 0;
+        for (int i = 1; i < parts.length; i++) {
+            String list = parts[i].trim();
+            if (list.isEmpty()) {
+                continue;
+            }
+            boolean white = list.charAt(0) == 'W';
+            if (!white && list.charAt(0) != 'B') {
+                throw new IllegalArgumentException("Wrong FEN: " + fen);
+            }
+            for (String item : list.substring(1).split(",")) {
+                item = item.trim();
+                if (item.isEmpty()) {
+                    continue;
+                }
+                boolean queen = item.charAt(0) == 'K';
+                if (queen) {
+                    item = item.substring(1);
+                }
+                int dash = item.indexOf('-');
+                int first;
+                int last;
+                try {
+                    first = Integer.parseInt(dash < 0 ? item : item.substring(0, dash));
+                    last = (dash < 0) ? first : Integer.parseInt(item.substring(dash + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Wrong FEN: " + fen, e);
+                }
+                if (first < 1 || last > MoveGenerator.SQUARES || first > last) {
+                    throw new IllegalArgumentException("Wrong FEN: " + fen);
+                }
+                for (int sq = first - 1; sq < last; sq++) {
+                    if (white) {
+                        board.whiteCells |= 1 << sq;
+                    } else {
+                        board.blackCells |= 1 << sq;
+                    }
+                    if (queen) {
+                        board.queens |= 1 << sq;
+                    }
+                }
+            }
+        }
+        board.setTurn(parts[0].equals("W") ? Player.Color.WHITE : Player.Color.BLACK, -1);
+        return board;
+    }
+
+    public String toFen() {
+        return toFen(false);
+    }
+
+    // squares by numbers 1-32, or by algebraic names as PDN writes them
+    String toFen(boolean algebraic) {
+        StringBuilder fen = new StringBuilder(whiteTurn ? "W" : "B");
+        fen.append(":W");
+        appendFenSquares(fen, whiteCells, algebraic);
+        fen.append(":B");
+        appendFenSquares(fen, blackCells, algebraic);
+        return fen.toString();
+    }
+
+    private void appendFenSquares(StringBuilder fen, int cells, boolean algebraic) {
+        boolean first = true;
+        for (int sq = 0; sq < MoveGenerator.SQUARES; sq++) {
+            if ((cells & (1 << sq)) != 0) {
+                if (!first) {
+                    fen.append(',');
+                }
+                if ((queens & (1 << sq)) != 0) {
+                    fen.append('K');
+                }
+                if (algebraic) {
+                    fen.append(PdnWriter.square(sq));
+                } else {
+                    fen.append(sq + 1);
+                }
+                first = false;
+            }
+        }
+    }
+
+    public Board(BoardSnapshot snapshot) {
+        whiteCells = snapshot.getWhiteCells();
+        blackCells = snapshot.getBlackCells();
+        queens = snapshot.getQueens();
+        whiteTurn = snapshot.isWhiteTurn();
+        continuation = snapshot.getContinuation();
+        hash = snapshot.getHash();
+        pieceSquare = snapshot.getPieceSquareScore();
+    }
+
+    // puts the pieces on the board, no beat sequence is going on
+    void set(int whiteCells, int blackCells, int queens, boolean whiteTurn) {
+        this.whiteCells = whiteCells;
+        this.blackCells = blackCells;
+        this.queens = queens;
+        this.whiteTurn = whiteTurn;
+        continuation = -1;
+        hash = computeHash();
+        pieceSquare = Evaluation.pieceSquare(whiteCells, blackCells, queens);
+    }
+
     public Board(Board board) {
         blackCells = board.blackCells;
         whiteCells = board.whiteCells;
         queens = board.queens;
+        whiteTurn = board.whiteTurn;
+        continuation = board.continuation;
+        hash = board.hash;
+        pieceSquare = board.pieceSquare;
     }
 
     public boolean isCorrectCell(int row, int col){
@@ -83,11 +243,12 @@ public class Board {
     }
 
 
-    synchronized public Cell getCell(int row, int col) {
-        if (!isCorrectCell(row,col)){
+    static Cell getCell(int whiteCells, int blackCells, int queens, int row, int col) {
+        if (row < 0 || col < 0 || row >= defaultSize || col >= defaultSize
+                || ((row*(defaultSize-1) + col) & 1) == 0){
             return Cell.INVALID;
         }
-        int mask = getCellMask(row, col);
+        int mask = 1 << MoveGenerator.square(row, col);
         if ((blackCells & mask) != 0){
             if ((queens & mask) != 0){
                 return Cell.BLACK_QUEEN;
@@ -102,9 +263,16 @@ public class Board {
         return Cell.EMPTY;
     }
 
-    synchronized public void setCell(int row, int col, Cell cell) {
+    public Cell getCell(int row, int col) {
+        return getCell(whiteCells, blackCells, queens, row, col);
+    }
+
+    public void setCell(int row, int col, Cell cell) {
         if (isCorrectCell(row,col)){
+            int square = MoveGenerator.square(row, col);
             int mask = getCellMask(row, col);
+            hash ^= pieceKey(square);
+            pieceSquare -= pieceSquareValue(square);
             if (cell.isWhite()){
                 whiteCells |= mask;
                 blackCells &= ~mask;
@@ -121,14 +289,264 @@ public class Board {
             } else {
                 queens &= ~mask;
             }
+            hash ^= pieceKey(square);
+            pieceSquare += pieceSquareValue(square);
+        }
+    }
+
+    // applies a legal packed move in place, returns the record undoMove needs to take it back;
+    // the turn passes to the opponent unless the piece has to go on beating
+    public int makeMove(int move) {
+        int fromSquare = PackedMove.from(move);
+        int toSquare = PackedMove.to(move);
+        int from = 1 << fromSquare;
+        int to = 1 << toSquare;
+        int path = from | to;
+        int undo = move | ((continuation + 1) << CONTINUATION_SHIFT) | (whiteTurn ? WHITE_TURN : 0);
+        boolean white = (whiteCells & from) != 0;
+        boolean queen = (queens & from) != 0;
+        if (white) {
+            whiteCells ^= path;
+        } else {
+            blackCells ^= path;
+        }
+        if (queen) {
+            queens ^= path;
+        } else if (PackedMove.isPromotion(move)) {
+            queens ^= to;
+        }
+        int piece = Zobrist.piece(white, queen);
+        int movedPiece = Zobrist.piece(white, queen || PackedMove.isPromotion(move));
+        hash ^= Zobrist.PIECES[piece][fromSquare] ^ Zobrist.PIECES[movedPiece][toSquare];
+        pieceSquare += Evaluation.PIECE_SQUARE[movedPiece][toSquare] - Evaluation.PIECE_SQUARE[piece][fromSquare];
+        int captured = PackedMove.capturedMask(move);
+        if (captured != 0) {
+            boolean capturedQueen = (queens & captured) != 0;
+            if (capturedQueen) {
+                queens ^= captured;
+                undo |= CAPTURED_QUEEN;
+            }
+            if (white) {
+                blackCells ^= captured;
+            } else {
+                whiteCells ^= captured;
+            }
+            int capturedPiece = Zobrist.piece(!white, capturedQueen);
+            hash ^= Zobrist.PIECES[capturedPiece][PackedMove.captured(move)];
+            pieceSquare -= Evaluation.PIECE_SQUARE[capturedPiece][PackedMove.captured(move)];
+        }
+
+        if (continuation >= 0) {
+            hash ^= Zobrist.CONTINUATION[continuation];
+        }
+        boolean nextWhiteTurn;
+        if (captured != 0 && MoveGenerator.canCapture(this, toSquare)) {
+            continuation = toSquare;
+            hash ^= Zobrist.CONTINUATION[continuation];
+            nextWhiteTurn = white;
+        } else {
+            continuation = -1;
+            nextWhiteTurn = !white;
+        }
+        if (nextWhiteTurn != whiteTurn) {
+            whiteTurn = nextWhiteTurn;
+            hash ^= Zobrist.BLACK_TURN;
+        }
+        return undo;
+    }
+
+    public void undoMove(int undo) {
+        int fromSquare = PackedMove.from(undo);
+        int toSquare = PackedMove.to(undo);
+        int from = 1 << fromSquare;
+        int to = 1 << toSquare;
+        int path = from | to;
+        boolean white = (whiteCells & to) != 0;
+        boolean queen = (queens & to) != 0;
+        if (white) {
+            whiteCells ^= path;
+        } else {
+            blackCells ^= path;
+        }
+        if (PackedMove.isPromotion(undo)) {
+            queens ^= to;
+        } else if (queen) {
+            queens ^= path;
+        }
+        int movedPiece = Zobrist.piece(white, queen);
+        int piece = Zobrist.piece(white, queen && !PackedMove.isPromotion(undo));
+        hash ^= Zobrist.PIECES[movedPiece][toSquare] ^ Zobrist.PIECES[piece][fromSquare];
+        pieceSquare += Evaluation.PIECE_SQUARE[piece][fromSquare] - Evaluation.PIECE_SQUARE[movedPiece][toSquare];
+        int captured = PackedMove.capturedMask(undo);
+        if (captured != 0) {
+            boolean capturedQueen = (undo & CAPTURED_QUEEN) != 0;
+            if (capturedQueen) {
+                queens ^= captured;
+            }
+            if (white) {
+                blackCells ^= captured;
+            } else {
+                whiteCells ^= captured;
+            }
+            int capturedPiece = Zobrist.piece(!white, capturedQueen);
+            hash ^= Zobrist.PIECES[capturedPiece][PackedMove.captured(undo)];
+            pieceSquare += Evaluation.PIECE_SQUARE[capturedPiece][PackedMove.captured(undo)];
+        }
+
+        restoreTurn(undo);
+    }
+
+    private void restoreTurn(int undo) {
+        if (continuation >= 0) {
+            hash ^= Zobrist.CONTINUATION[continuation];
+        }
+        continuation = ((undo >>> CONTINUATION_SHIFT) & 63) - 1;
+        if (continuation >= 0) {
+            hash ^= Zobrist.CONTINUATION[continuation];
+        }
+        boolean previousWhiteTurn = (undo & WHITE_TURN) != 0;
+        if (previousWhiteTurn != whiteTurn) {
+            whiteTurn = previousWhiteTurn;
+            hash ^= Zobrist.BLACK_TURN;
+        }
+    }
+
+    // Applies a move made by MoveGenerator.generateSequences in place, captured is the mask of the
+    // beaten pieces. The turn always passes to the opponent. Returns the record undoSequence needs:
+    // the beaten queens in the high half and the undo record of makeMove in the low one.
+    public long makeSequence(int move, int captured) {
+        int fromSquare = PackedMove.from(move);
+        int toSquare = PackedMove.to(move);
+        int from = 1 << fromSquare;
+        int to = 1 << toSquare;
+        int undo = move | ((continuation + 1) << CONTINUATION_SHIFT) | (whiteTurn ? WHITE_TURN : 0);
+        boolean white = (whiteCells & from) != 0;
+        boolean queen = (queens & from) != 0;
+        boolean movedQueen = queen || PackedMove.isPromotion(move);
+        int capturedQueens = queens & captured;
+
+        // the beaten pieces go first: the sequence may end on a square of one of them or on its start square
+        queens ^= capturedQueens;
+        if (white) {
+            blackCells ^= captured;
+        } else {
+            whiteCells ^= captured;
+        }
+        for (int c = captured; c != 0; c &= c - 1) {
+            int square = Integer.numberOfTrailingZeros(c);
+            int capturedPiece = Zobrist.piece(!white, (capturedQueens & (1 << square)) != 0);
+            hash ^= Zobrist.PIECES[capturedPiece][square];
+            pieceSquare -= Evaluation.PIECE_SQUARE[capturedPiece][square];
+        }
+
+        if (white) {
+            whiteCells = (whiteCells & ~from) | to;
+        } else {
+            blackCells = (blackCells & ~from) | to;
+        }
+        queens &= ~from;
+        if (movedQueen) {
+            queens |= to;
+        }
+        int piece = Zobrist.piece(white, queen);
+        int movedPiece = Zobrist.piece(white, movedQueen);
+        hash ^= Zobrist.PIECES[piece][fromSquare] ^ Zobrist.PIECES[movedPiece][toSquare];
+        pieceSquare += Evaluation.PIECE_SQUARE[movedPiece][toSquare] - Evaluation.PIECE_SQUARE[piece][fromSquare];
+
+        if (continuation >= 0) {
+            hash ^= Zobrist.CONTINUATION[continuation];
+            continuation = -1;
         }
+        whiteTurn = !white;
+        hash ^= Zobrist.BLACK_TURN;
+        return ((long) capturedQueens << 32) | (undo & 0xFFFFFFFFL);
+    }
+
+    public void undoSequence(long undo, int captured) {
+        int record = (int) undo;
+        int capturedQueens = (int) (undo >>> 32);
+        int fromSquare = PackedMove.from(record);
+        int toSquare = PackedMove.to(record);
+        int from = 1 << fromSquare;
+        int to = 1 << toSquare;
+        boolean white = (whiteCells & to) != 0;
+        boolean movedQueen = (queens & to) != 0;
+        boolean queen = movedQueen && !PackedMove.isPromotion(record);
+
+        if (white) {
+            whiteCells = (whiteCells & ~to) | from;
+            blackCells |= captured;
+        } else {
+            blackCells = (blackCells & ~to) | from;
+            whiteCells |= captured;
+        }
+        queens &= ~to;
+        if (queen) {
+            queens |= from;
+        }
+        queens |= capturedQueens;
+        int piece = Zobrist.piece(white, queen);
+        int movedPiece = Zobrist.piece(white, movedQueen);
+        hash ^= Zobrist.PIECES[movedPiece][toSquare] ^ Zobrist.PIECES[piece][fromSquare];
+        pieceSquare += Evaluation.PIECE_SQUARE[piece][fromSquare] - Evaluation.PIECE_SQUARE[movedPiece][toSquare];
+        for (int c = captured; c != 0; c &= c - 1) {
+            int square = Integer.numberOfTrailingZeros(c);
+            int capturedPiece = Zobrist.piece(!white, (capturedQueens & (1 << square)) != 0);
+            hash ^= Zobrist.PIECES[capturedPiece][square];
+            pieceSquare += Evaluation.PIECE_SQUARE[capturedPiece][square];
+        }
+        restoreTurn(record);
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    // material and placement, from white's side
+    int getPieceSquareScore() {
+        return pieceSquare;
+    }
+
+    public Player.Color getTurn() {
+        return whiteTurn ? Player.Color.WHITE : Player.Color.BLACK;
+    }
+
+    boolean isWhiteTurn() {
+        return whiteTurn;
+    }
+
+    int getContinuation() {
+        return continuation;
+    }
+
+    // sets the side to move and the piece which has to go on beating (-1 if there is none)
+    void setTurn(Player.Color color, int continuation) {
+        whiteTurn = (color == Player.Color.WHITE);
+        this.continuation = -1;
+        if (continuation >= 0 && MoveGenerator.canCapture(this, continuation)) {
+            this.continuation = continuation;
+        }
+        hash = computeHash();
+        pieceSquare = Evaluation.pieceSquare(whiteCells, blackCells, queens);
+    }
+
+    int getWhiteCells() {
+        return whiteCells;
+    }
+
+    int getBlackCells() {
+        return blackCells;
+    }
+
+    int getQueens() {
+        return queens;
     }
 
-    synchronized public int getCountWhite() {
+    public int getCountWhite() {
         return Integer.bitCount(whiteCells);
     }
 
-    synchronized public int getCountBlack() {
+    public int getCountBlack() {
         return Integer.bitCount(blackCells);
     }
 
@@ -89,12 +89,17 @@ public class BoardCellView extends View{
     }
 
     public void setOpponentsPath(boolean opponentsPath) {
-        this.opponentsPath = opponentsPath;
+        if (this.opponentsPath != opponentsPath) {
+            this.opponentsPath = opponentsPath;
+            invalidate();
+        }
     }
 
     public void setCell(Board.Cell cell) {
-        this.cell = cell;
-        this.invalidate();
+        if (this.cell != cell) {
+            this.cell = cell;
+            this.invalidate();
+        }
     }
 
     public boolean isCanSelect() {
@@ -102,7 +107,10 @@ public class BoardCellView extends View{
     }
 
     public void setCanSelect(boolean canSelect) {
-        this.canSelect = canSelect;
+        if (this.canSelect != canSelect) {
+            this.canSelect = canSelect;
+            invalidate();
+        }
     }
 
     public Board.Cell getCell() {
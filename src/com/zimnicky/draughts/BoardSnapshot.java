@@ -0,0 +1,86 @@
+package com.zimnicky.draughts;
+
+// Immutable copy of the game board. Game publishes a new one after every move
+// through a volatile field, so other threads read the position without locks.
+public final class BoardSnapshot {
+
+    private final int whiteCells;
+    private final int blackCells;
+    private final int queens;
+    private final int state;    // bit 0 -- white to move, bits 1-6 -- continuation + 1
+    private final long version; // number of moves made on the board before this snapshot
+    private final long hash;            // kept so a Board is made from the snapshot without recomputing them
+    private final int pieceSquareScore;
+
+    BoardSnapshot(Board board, long version) {
+        whiteCells = board.getWhiteCells();
+        blackCells = board.getBlackCells();
+        queens = board.getQueens();
+        state = (board.isWhiteTurn() ? 1 : 0) | ((board.getContinuation() + 1) << 1);
+        this.version = version;
+        hash = board.getHash();
+        pieceSquareScore = board.getPieceSquareScore();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Board.Cell getCell(int row, int col) {
+        return Board.getCell(whiteCells, blackCells, queens, row, col);
+    }
+
+    // the piece on the cell can beat
+    public boolean canBeat(int row, int col) {
+        return MoveGenerator.canCapture(whiteCells, blackCells, queens, row, col);
+    }
+
+    // bit i is set if square i (row * 4 + col / 2) differs in the other snapshot
+    public int changedSquares(BoardSnapshot other) {
+        return (whiteCells ^ other.whiteCells) | (blackCells ^ other.blackCells) | (queens ^ other.queens);
+    }
+
+    public int getCountWhite() {
+        return Integer.bitCount(whiteCells);
+    }
+
+    public int getCountBlack() {
+        return Integer.bitCount(blackCells);
+    }
+
+    public Player.Color getTurn() {
+        return isWhiteTurn() ? Player.Color.WHITE : Player.Color.BLACK;
+    }
+
+    public Board toBoard() {
+        return new Board(this);
+    }
+
+    int getWhiteCells() {
+        return whiteCells;
+    }
+
+    int getBlackCells() {
+        return blackCells;
+    }
+
+    int getQueens() {
+        return queens;
+    }
+
+    boolean isWhiteTurn() {
+        return (state & 1) != 0;
+    }
+
+    int getContinuation() {
+        return (state >>> 1) - 1;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    int getPieceSquareScore() {
+        return pieceSquareScore;
+    }
+}
@@ -0,0 +1,99 @@
+package com.zimnicky.draughts;
+
+// Static evaluation on the piece masks. Material, advancement and center are piece-square
+// values which Board keeps up to date on every move; back rank guard, mobility and
+// runaway men are counted with masks at the leaves. All ratings are from white's side.
+final class Evaluation {
+
+    static final int MAN = 100;
+    static final int QUEEN = 300;
+
+    static final int CENTER = 4;            // man or queen on the central squares
+    static final int LONG_DIAGONAL = 10;    // queen on the long diagonal
+    static final int GUARD = 8;             // man on its own back rank while the opponent has no queens
+    static final int MOBILITY = 2;          // empty square a piece can step to
+    static final int RUNAWAY = 60;          // man one step before promotion which can step forward
+
+    // bonus of a man by rows from its own back rank, there are no men on the promotion row
+    private static final int[] ADVANCEMENT = {0, 2, 4, 7, 10, 15, 25, 0};
+
+    static final int WHITE_BACK_RANK = MoveGenerator.BLACK_PROMOTION;   // row 7
+    static final int BLACK_BACK_RANK = MoveGenerator.WHITE_PROMOTION;   // row 0
+    static final int WHITE_RUNAWAY_ROW = 0x000000F0;                    // row 1
+    static final int BLACK_RUNAWAY_ROW = 0x0F000000;                    // row 6
+
+    // indexed by Zobrist.piece(white, queen) and square, black values are negative
+    static final int[][] PIECE_SQUARE = new int[4][MoveGenerator.SQUARES];
+
+    static {
+        for (int square = 0; square < MoveGenerator.SQUARES; square++) {
+            int row = MoveGenerator.row(square);
+            int col = MoveGenerator.col(square);
+            boolean center = row >= 2 && row <= 5 && col >= 2 && col <= 5;
+            int man = MAN + (center ? CENTER : 0);
+            int queen = QUEEN + (center ? CENTER : 0) + (row + col == 7 ? LONG_DIAGONAL : 0);
+            PIECE_SQUARE[Zobrist.piece(true, false)][square] = man + ADVANCEMENT[7 - row];
+            PIECE_SQUARE[Zobrist.piece(true, true)][square] = queen;
+            PIECE_SQUARE[Zobrist.piece(false, false)][square] = -(man + ADVANCEMENT[row]);
+            PIECE_SQUARE[Zobrist.piece(false, true)][square] = -queen;
+        }
+    }
+
+    private Evaluation() {}
+
+    static int pieceSquare(int white, int black, int queens) {
+        int score = 0;
+        for (int square = 0; square < MoveGenerator.SQUARES; square++) {
+            int mask = 1 << square;
+            if (((white | black) & mask) != 0) {
+                score += PIECE_SQUARE[Zobrist.piece((white & mask) != 0, (queens & mask) != 0)][square];
+            }
+        }
+        return score;
+    }
+
+    // empty squares next to the pieces in their directions of a quiet move
+    private static int mobility(int men, int queens, int empty, boolean white) {
+        int forward1 = white ? 2 : 0;
+        int forward2 = white ? 3 : 1;
+        int count = Integer.bitCount(MoveGenerator.shift(men | queens, forward1) & empty)
+                + Integer.bitCount(MoveGenerator.shift(men | queens, forward2) & empty);
+        if (queens != 0) {
+            count += Integer.bitCount(MoveGenerator.shift(queens, forward1 ^ 2) & empty)
+                    + Integer.bitCount(MoveGenerator.shift(queens, forward2 ^ 2) & empty);
+        }
+        return count;
+    }
+
+    static int evaluate(Board board) {
+        int white = board.getWhiteCells();
+        int black = board.getBlackCells();
+        int queens = board.getQueens();
+        int empty = ~(white | black);
+        int whiteMen = white & ~queens;
+        int blackMen = black & ~queens;
+        int whiteQueens = white & queens;
+        int blackQueens = black & queens;
+
+        int score = board.getPieceSquareScore();
+        if (blackQueens == 0) {
+            score += GUARD * Integer.bitCount(whiteMen & WHITE_BACK_RANK);
+        }
+        if (whiteQueens == 0) {
+            score -= GUARD * Integer.bitCount(blackMen & BLACK_BACK_RANK);
+        }
+        score += MOBILITY * (mobility(whiteMen, whiteQueens, empty, true) - mobility(blackMen, blackQueens, empty, false));
+
+        int whiteRunaway = whiteMen & WHITE_RUNAWAY_ROW;
+        if (whiteRunaway != 0) {
+            score += RUNAWAY * Integer.bitCount((MoveGenerator.shift(whiteRunaway, 2) | MoveGenerator.shift(whiteRunaway, 3))
+                    & empty);
+        }
+        int blackRunaway = blackMen & BLACK_RUNAWAY_ROW;
+        if (blackRunaway != 0) {
+            score -= RUNAWAY * Integer.bitCount((MoveGenerator.shift(blackRunaway, 0) | MoveGenerator.shift(blackRunaway, 1))
+                    & empty);
+        }
+        return score;
+    }
+}
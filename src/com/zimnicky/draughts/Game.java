@@ -2,6 +2,9 @@ package com.zimnicky.draughts;
 
 
 import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class Game implements Runnable{
     public enum MoveResult{UNKNOWN, MOVED, BEAT, WRONG}
@@ -20,6 +23,12 @@ public class Game implements Runnable{
             distCol = (byte)colj;
             distRow = (byte)rowj;
         }
+
+        Move(int rowi, int coli, int rowj, int colj, MoveResult result) {
+            this(rowi, coli, rowj, colj);
+            this.result = result;
+        }
+
         public Move(Move other){
             startCol = other.startCol;
             startRow = other.startRow;
@@ -73,21 +82,43 @@ public class Game implements Runnable{
         public MoveResult getResult() {
            return result;
        }
+
+        void setResult(MoveResult result) {
+            this.result = result;
+        }
         public String toString(){
            return "(" + startRow + ", " + startCol + ") - (" + distRow + ", " + distCol + ")";
        }
 
     }
 
-    private final int[][] directions = {{1,1},{1, -1}, {-1, -1}, {-1, 1}};
+    // Called on the thread which plays the game.
+    public interface GameListener {
+        void moveApplied(Game game, Move move, BoardSnapshot before, BoardSnapshot after);
+        void turnChanged(Game game, int player, Move lastMove);  // the player is asked for a move
+        void gameOver(Game game, int winner);
+    }
+
+    public static final int DRAW = 2;   // winner of a game stopped by the move limit
 
     private Player[] players;
     private int currentPlayer;
-    private int winner;
+    private volatile int winner = -1;
+    private int moveLimit;      // turns before a draw is declared, 0 -- no limit
+    private ArrayList<Move> history = new ArrayList<>();
     private Move[] lastMove;  // last move of each player
-    private Board board;
+    private Board board;                        // changed by the game thread only
+    private Board start = new Board();          // position the game started from
+    private GameRecord loaded;                  // played on by the next run() or start(), may be null
+    private volatile BoardSnapshot snapshot;    // published after every change of the board
+    private volatile LegalMoves legalMoves;     // of the current turn
+    private long version;
+
+    private final CopyOnWriteArrayList<GameListener> listeners = new CopyOnWriteArrayList<>();
 
     private boolean beatSequence;
+    private int turns;
+    private Executor executor;  // runs the game started by start(), null for run()
 
     public Player getPlayer(int i) {
         return players[i];
@@ -102,97 +133,158 @@ public class Game implements Runnable{
     }
 
     public Board getBoard() {
-        return new Board(board);
+        return new Board(snapshot);
+    }
+
+    // current position, can be read from any thread without locking
+    public BoardSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // moves of the current turn, computed once per turn
+    public LegalMoves getLegalMoves() {
+        return legalMoves;
+    }
+
+    private void publish() {
+        snapshot = new BoardSnapshot(board, version++);
     }
 
     public Move getLastMove(int player) {
         return lastMove[player];
     }
 
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
+    public int getMoveLimit() {
+        return moveLimit;
+    }
+
+    public void setMoveLimit(int moveLimit) {
+        this.moveLimit = moveLimit;
+    }
+
+    // all moves made in the game, every hop of a beat sequence is a separate move
+    public ArrayList<Move> getMoves() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    // The game goes on from the end of the record: the next run() or start() sets up its start
+    // position and plays its moves before the players are asked. The tags are kept in getRecord().
+    public void load(GameRecord record) {
+        loaded = record;
+    }
+
+    // the moves made in the game from its start position, with the result if the game is over
+    public GameRecord getRecord() {
+        GameRecord record = new GameRecord(start);
+        if (loaded != null) {
+            record.getTags().putAll(loaded.getTags());
+        }
+        for (Move move : getMoves()) {
+            record.add(move);
+        }
+        record.setWinner(winner);
+        return record;
+    }
+
+    // rules only, for tools which check positions without playing a game
+    Game() {
+        board = new Board();
+        publish();
+        legalMoves = new LegalMoves(board, Player.Color.WHITE, -1);
+    }
+
     public Game(Player first, Player second) {
+        this(first, second, true);
+    }
+
+    // if start is false the game is played by calling run() on any thread
+    public Game(Player first, Player second, boolean start) {
+        board = new Board();
+        publish();
+        legalMoves = new LegalMoves(board, Player.Color.WHITE, -1);
         players = new Player[2];
         players[0] = first;
         players[1] = second;
         first.setColor(Player.Color.WHITE);
         first.setColor(Player.Color.BLACK);
-        Thread th = new Thread(this);
-        th.start();
+        if (start) {
+            Thread th = new Thread(this);
+            th.start();
+        }
     }
 
 
+    // the move is checked against legalMoves
     private void makeMove(Move move) {
-        makeMove(board, move);
+        BoardSnapshot before = snapshot;
+        board.makeMove(legalMoves.find(MoveGenerator.square(move.getStartRow(), move.getStartCol()),
+                MoveGenerator.square(move.getDistRow(), move.getDistCol())));
+        publish();
+        Move made = new Move(move.getStartRow(), move.getStartCol(), move.getDistRow(), move.getDistCol(),
+                move.getResult());
+        synchronized (history) {
+            history.add(made);
+        }
+        for (GameListener listener : listeners) {
+            listener.moveApplied(this, made, before, snapshot);
+        }
     }
 
     public void makeMove(Board board, Move move){
-        Board.Cell cell = board.getCell(move.getStartRow(), move.getStartCol());
-
-        if (cell == Board.Cell.BLACK && move.getDistRow() == board.getSize() - 1){
-            board.setCell(move.getDistRow(), move.getDistCol(), Board.Cell.BLACK_QUEEN);
-        } else if (cell == Board.Cell.WHITE && move.getDistRow() == 0){
-            board.setCell(move.getDistRow(), move.getDistCol(), Board.Cell.WHITE_QUEEN);
-        } else{
-            board.setCell(move.getDistRow(), move.getDistCol(), cell);
-        }
-        board.setCell(move.getStartRow(), move.getStartCol(), Board.Cell.EMPTY);
-
-        if (move.getResult() == MoveResult.BEAT) {
-            int dr = ((move.getDistRow() - move.getStartRow()) / Math.abs(move.getDistRow() - move.getStartRow()));
-            int dc = ((move.getDistCol() - move.getStartCol()) / Math.abs(move.getDistCol() - move.getStartCol()));
-            int j = (move.getStartCol() + dc);
-            for (int i = (move.getStartRow() + dr); i != move.getDistRow(); i += dr, j += dc){
-                board.setCell(i,j, Board.Cell.EMPTY);
-            }
-        }
+        board.makeMove(toPacked(board, move));
     }
 
+    // packs a checked move (its result is known) made on the board
+    private int toPacked(Board board, Move move){
+        int from = MoveGenerator.square(move.getStartRow(), move.getStartCol());
+        int to = MoveGenerator.square(move.getDistRow(), move.getDistCol());
+        Board.Cell cell = board.getCell(move.getStartRow(), move.getStartCol());
+        boolean promotion = (cell == Board.Cell.BLACK && move.getDistRow() == board.getSize() - 1)
+                || (cell == Board.Cell.WHITE && move.getDistRow() == 0);
+        if (move.getResult() != MoveResult.BEAT) {
+            return PackedMove.quiet(from, to, promotion);
+        }
+        int dr = ((move.getDistRow() - move.getStartRow()) / Math.abs(move.getDistRow() - move.getStartRow()));
+        int dc = ((move.getDistCol() - move.getStartCol()) / Math.abs(move.getDistCol() - move.getStartCol()));
+        int i = move.getStartRow() + dr;
+        int j = move.getStartCol() + dc;
+        while (board.getCell(i, j).isEmpty()) {
+            i += dr;
+            j += dc;
+        }
+        return PackedMove.capture(from, to, MoveGenerator.square(i, j), promotion);
+    }
 
+    public void makeMove(Board board, int move){
+        board.makeMove(move);
+    }
 
     public boolean canBeat(int i, int j, Board board){
-        Board.Cell cell = board.getCell(i,j);
-        for (int[] d: directions) {
-
-            int ii = (i + d[0]);
-            int jj = (j + d[1]);
-            while (cell.isQueen() && board.getCell(ii, jj) == Board.Cell.EMPTY){
-                ii += d[0];
-                jj += d[1];
-            }
-            if (board.isCorrectCell(ii,jj) && !board.getCell(ii, jj).isEmpty()
-                    && !board.getCell(ii, jj).sameColor(cell)) {
-                int seqLen = board.sequenceLength(ii, jj, d[0], d[1]);
-                if (seqLen == 1) {
-                    ii += seqLen * d[0];
-                    jj += seqLen * d[1];
-                    if (board.getCell(ii, jj).isEmpty()) {
-                        return true;
-                    }
-                }
-            }
-
-        }
-        return false;
+        return MoveGenerator.canCapture(board, i, j);
     }
 
     public boolean canBeat(int i, int j) {
-        return canBeat(i, j, board);
+        return snapshot.canBeat(i, j);
     }
 
 
 
     public boolean canBeat(Player.Color playerColor, Board board) {                      // returns true if 1 or more beats are available for player
-        for (int row = 0; row < board.getSize(); row++){
-            for (int col = 0; col < board.getSize(); col++) {
-                if (board.getCell(row,col).sameColor(playerColor) && canBeat(row, col, board)){
-                    return true;
-                }
-            }
-        }
-        return false;
+        return MoveGenerator.canCapture(board, playerColor);
     }
 
     public boolean canBeat(){
-        return canBeat(players[currentPlayer].getColor(), board);
+        return legalMoves.isCapture();
     }
 
 
@@ -267,134 +359,213 @@ public class Game implements Runnable{
     }
 
     public boolean canMove(Move move, Move lastMove) {
-       return canMove(move, lastMove, board);
+        LegalMoves legal = legalMoves;
+        if (legal.getContinuation() != continuationCell(lastMove)) {
+            return canMove(move, lastMove, getBoard());
+        }
+        return legal.check(move);
     }
 
 
 
+    private int continuationCell(Move lastMove) {
+        if (lastMove == null || lastMove.result != MoveResult.BEAT) {
+            return -1;
+        }
+        return MoveGenerator.square(lastMove.getDistRow(), lastMove.getDistCol());
+    }
+
     // returns null if there are no moves from this cell
     public ArrayList<Move> getAvailableMoves(int row, int col, Board board, Player.Color playerColor, Move lastMove){
-        if (board.getCell(row, col) == Board.Cell.INVALID
-                || (lastMove != null && lastMove.result == MoveResult.BEAT
-                    && (row != lastMove.getDistRow() || col != lastMove.getDistCol())
-                    && canBeat(lastMove.getDistRow(), lastMove.getDistCol(), board))){
+        if (!board.isCorrectCell(row, col)){
             return null;
         }
-        boolean beat = canBeat(playerColor, board);
-        if (beat && !canBeat(row, col, board)){
-            return null;
-        }
-        ArrayList<Move> moves = new ArrayList<>();
-        for (int[] d: directions) {
-            int l = 7;
-            if (!board.getCell(row,col).isQueen()){
-                board.sequenceLength(row + d[0], col + d[1], d[0], d[1]);
-            }
-            for (int i = 1; i <= l+1; i++){
-                Move move = new Move(row, col, row + i*d[0], col + i*d[1]);
-                if (canMove(move, lastMove, board) && (!beat || move.getResult() == MoveResult.BEAT)) {
-                    moves.add(move);
+        ArrayList<Move> moves = null;
+        for (Move move: MoveGenerator.generate(board, playerColor, continuationCell(lastMove))) {
+            if (move.getStartRow() == row && move.getStartCol() == col) {
+                if (moves == null) {
+                    moves = new ArrayList<>();
                 }
+                moves.add(move);
             }
         }
-        if (moves.size() == 0){
-            return null;
-        }
         return moves;
     }
 
     public ArrayList<Move> getAvailableMoves(int row, int col){
-        if (beatSequence) {
-            return getAvailableMoves(row, col, board, players[currentPlayer].getColor(), lastMove[currentPlayer]);
-        }
-        return getAvailableMoves(row, col, board, players[currentPlayer].getColor(), null);
+        return legalMoves.getMoves(row, col);
     }
 
 
+    // returns null if there are no moves
     public ArrayList<Move> getAllAvailableMoves(Board board, Player.Color playerColor, Move lastMove){
-        ArrayList<Move> moves = null;
-        for (int row = 0; row < board.getSize(); row++){
-            for (int col = 0; col < board.getSize(); col++) {
-                if (board.getCell(row, col).sameColor(playerColor)){
-                    ArrayList<Move> movesRC = getAvailableMoves(row, col, board, playerColor, lastMove);
-                    if (movesRC != null) {
-                        if (moves == null){
-                            moves = new ArrayList<>();
-                        }
-                        moves.addAll(movesRC);
-                    }
-                }
-            }
+        ArrayList<Move> moves = MoveGenerator.generate(board, playerColor, continuationCell(lastMove));
+        if (moves.isEmpty()) {
+            return null;
         }
         return moves;
     }
 
     public boolean canMove(Board board, Player.Color playerColor, Move lastMove) {
-        for (int row = 0; row < board.getSize(); row++){
-            for (int col = 0; col < board.getSize(); col++) {
-                if ((board.getCell(row, col).sameColor(playerColor)) && (getAvailableMoves(row, col, board, playerColor, lastMove) != null)){
-                        return true;
-                }
-            }
-        }
-        return false;
+        return !MoveGenerator.generate(board, playerColor, continuationCell(lastMove)).isEmpty();
     }
 
     public boolean canMove() { // returns true if 1 or more moves are available for current player
-        if (beatSequence){
-            return canMove(board, players[currentPlayer].getColor(), getLastMove(currentPlayer));
-        }
-        return canMove(board, players[currentPlayer].getColor(), null);
+        return !legalMoves.isEmpty();
     }
 
 
 
-    public void run() {
-
-        currentPlayer = 0;
+    private void reset() {
         players[0].setColor(Player.Color.WHITE);
         players[1].setColor(Player.Color.BLACK);
-        board = new Board();
+        start = (loaded == null) ? new Board() : loaded.getStart();
+        board = new Board(start);
+        currentPlayer = board.isWhiteTurn() ? 0 : 1;
+        publish();
         winner = -1;
 
         lastMove = new Move[2];
         beatSequence = false;
+        synchronized (history) {
+            history.clear();
+        }
+        turns = 0;
+        if (loaded != null) {
+            replay(loaded);
+        }
+    }
+
+    // plays the moves of the record, stops at the first which isn't legal
+    private void replay(GameRecord record) {
+        for (Move move : record.getMoves()) {
+            if (isOver() || !legalMoves.check(move)) {
+                return;
+            }
+            apply(move);
+        }
+    }
+
+    private Move currentLastMove() {
+        return beatSequence ? lastMove[currentPlayer] : null;
+    }
 
-        while (board.getCountBlack() > 0 && board.getCountWhite() > 0 && winner == -1 && canMove()) {
+    private boolean isOver() {
+        legalMoves = new LegalMoves(board, players[currentPlayer].getColor(), continuationCell(currentLastMove()));
+        if (board.getCountBlack() == 0 || board.getCountWhite() == 0 || winner != -1 || legalMoves.isEmpty()) {
+            return true;
+        }
+        if (moveLimit > 0 && turns >= moveLimit) {
+            winner = DRAW;
+            return true;
+        }
+        return false;
+    }
+
+    // applies a checked move, passes the turn if the beat sequence is over
+    private void apply(Move move) {
+        makeMove(move);
+
+        lastMove[currentPlayer] = move;
+        if (move.getResult() != MoveResult.BEAT || !canBeat(move.getDistRow(), move.getDistCol(), board)) {
+            currentPlayer ^= 1;
+            beatSequence = false;
+            turns++;
+        } else {
+            beatSequence = true;
+        }
+    }
+
+    private void finish() {
+        if (board.getCountBlack() == 0){
+            winner = 0;
+        } else if (board.getCountWhite() == 0){
+            winner = 1;
+        } else if (winner == -1){
+            winner = currentPlayer ^ 1;
+        }
+        for (GameListener listener : listeners) {
+            listener.gameOver(this, winner);
+        }
+    }
+
+    private void turnChanged() {
+        for (GameListener listener : listeners) {
+            listener.turnChanged(this, currentPlayer, currentLastMove());
+        }
+    }
+
+    public void run() {
+        reset();
+
+        while (!isOver()) {
+            turnChanged();
             Move move;
             boolean correct;
             do {
-                if (beatSequence) {
-                    move = players[currentPlayer].makeMove(this, lastMove[currentPlayer]);
-                    correct = canMove(move, lastMove[currentPlayer]);
-                } else {
-                    move = players[currentPlayer].makeMove(this, null);
-                    correct = canMove(move, null);
-                }
+                move = players[currentPlayer].makeMove(this, currentLastMove());
+                correct = legalMoves.check(move);
             }while (!correct && move != null);
 
             if (move != null) {
-                makeMove(move);
-
-                lastMove[currentPlayer] = move;
-                if (move.getResult() != MoveResult.BEAT || !canBeat(move.getDistRow(), move.getDistCol())) {
-                    currentPlayer ^= 1;
-                    beatSequence = false;
-                } else {
-                    beatSequence = true;
-                }
+                apply(move);
             }
             else {
                 winner = currentPlayer ^ 1;
             }
         }
 
-        if (board.getCountBlack() == 0){
-            winner = 0;
-        } else if (board.getCountWhite() == 0){
-            winner = 1;
-        } else if (winner == -1){
+        finish();
+    }
+
+    // Plays the game without a thread of its own: moves are requested with Player.requestMove
+    // and every answer is handled by a task on the executor. While a player thinks
+    // (a human, for instance) the game holds no thread at all.
+    public void start(Executor executor) {
+        this.executor = executor;
+        executor.execute(new Runnable() {
+            public void run() {
+                reset();
+                requestMove();
+            }
+        });
+    }
+
+    private void requestMove() {
+        if (isOver()) {
+            finish();
+            return;
+        }
+        turnChanged();
+        final int player = currentPlayer;
+        final long position = version;
+        players[player].requestMove(this, currentLastMove(), new Player.MoveCallback() {
+            public void moveMade(final Move move) {
+                try {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            moveReceived(player, position, move);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // the executor is shut down, nobody plays this game any more
+                }
+            }
+        });
+    }
+
+    private void moveReceived(int player, long position, Move move) {
+        if (winner != -1 || player != currentPlayer || position != version) {
+            return;     // an answer to a request which is already answered
+        }
+        if (move == null) {
             winner = currentPlayer ^ 1;
+            finish();
+            return;
+        }
+        if (legalMoves.check(move)) {
+            apply(move);
         }
+        requestMove();
     }
 }
@@ -0,0 +1,185 @@
+package com.zimnicky.draughts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+// A game from its start position: the turns, the result and the PDN tags.
+// A turn is a quiet move or a whole beat sequence, packed as MoveGenerator.generateSequences
+// makes it, with the mask of the beaten pieces and the path the sequence went. Saved and loaded by PdnWriter/PdnReader
+// and by GameRecordWriter/GameRecordReader, played on by Game.load.
+public class GameRecord {
+
+    private static final Board START = new Board();     // only copied
+
+    private final Board start;
+    private final Board position;       // after the recorded moves
+    private int[] turns = new int[0];      // grown by the first turn, a header alone needs none
+    private int[] captures = new int[0];
+    private long[] paths = new long[0];
+    private int count;
+    private int winner = -1;            // as Game.getWinner(): 0 -- white, 1 -- black, Game.DRAW; -1 -- not known
+    private final LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+
+    // beat sequence added hop by hop which isn't over yet
+    private final int[] hops = new int[MoveGenerator.SQUARES];
+    private int hopCount;
+    private int sequenceCaptured;
+    private long sequencePath;
+    private boolean sequenceByMan;
+
+    public GameRecord() {
+        this(START);
+    }
+
+    // the start position can't be in the middle of a beat sequence
+    public GameRecord(Board start) {
+        if (start.getContinuation() >= 0) {
+            throw new IllegalArgumentException("A beat sequence is not over");
+        }
+        this.start = new Board(start);
+        position = new Board(start);
+    }
+
+    public Board getStart() {
+        return new Board(start);
+    }
+
+    // position after the recorded moves
+    public Board getPosition() {
+        return new Board(position);
+    }
+
+    Board position() {
+        return position;
+    }
+
+    boolean isStandardStart() {
+        return start.getWhiteCells() == START.getWhiteCells() && start.getBlackCells() == START.getBlackCells()
+                && start.getQueens() == START.getQueens() && start.isWhiteTurn();
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    public LinkedHashMap<String, String> getTags() {
+        return tags;
+    }
+
+    // complete turns
+    public int getTurnCount() {
+        return count;
+    }
+
+    int getTurn(int i) {
+        return turns[i];
+    }
+
+    int getCaptured(int i) {
+        return captures[i];
+    }
+
+    // squares after the hops of a beat sequence as MoveGenerator.generateSequences gives them
+    long getPath(int i) {
+        return paths[i];
+    }
+
+    // adds a whole turn which is legal in the position
+    void addTurn(int move, int captured, long path) {
+        if (hopCount > 0) {
+            throw new IllegalStateException("A beat sequence is not over");
+        }
+        position.makeSequence(move, captured);
+        append(move, captured, path);
+    }
+
+    private void append(int move, int captured, long path) {
+        if (count == turns.length) {
+            int size = Math.max(count * 2, 64);
+            turns = Arrays.copyOf(turns, size);
+            captures = Arrays.copyOf(captures, size);
+            paths = Arrays.copyOf(paths, size);
+        }
+        turns[count] = move;
+        captures[count] = captured;
+        paths[count] = path;
+        count++;
+    }
+
+    // adds a move as Game plays it, a hop of a beat sequence is a move
+    public void add(Game.Move move) {
+        if (!position.isCorrectCell(move.getStartRow(), move.getStartCol())
+                || !position.isCorrectCell(move.getDistRow(), move.getDistCol())) {
+            throw new IllegalArgumentException("Illegal move " + move);
+        }
+        int from = MoveGenerator.square(move.getStartRow(), move.getStartCol());
+        int to = MoveGenerator.square(move.getDistRow(), move.getDistCol());
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int n = MoveGenerator.generate(position.getWhiteCells(), position.getBlackCells(), position.getQueens(),
+                position.isWhiteTurn(), position.getContinuation(), moves);
+        int hop = PackedMove.NONE;
+        for (int i = 0; i < n; i++) {
+            if (PackedMove.from(moves[i]) == from && PackedMove.to(moves[i]) == to) {
+                hop = moves[i];
+            }
+        }
+        if (hop == PackedMove.NONE) {
+            throw new IllegalArgumentException("Illegal move " + move);
+        }
+
+        if (hopCount == 0) {
+            sequenceCaptured = 0;
+            sequencePath = 0;
+            sequenceByMan = (position.getQueens() & (1 << from)) == 0;
+        }
+        if (PackedMove.isCapture(hop)) {
+            sequencePath |= (long) to << (MoveGenerator.PATH_BITS * hopCount);
+        }
+        hops[hopCount++] = hop;
+        sequenceCaptured |= PackedMove.capturedMask(hop);
+        position.makeMove(hop);
+        if (position.getContinuation() >= 0) {
+            return;
+        }
+        int first = hops[0];
+        if (PackedMove.isCapture(first)) {
+            boolean promotion = sequenceByMan && (position.getQueens() & (1 << to)) != 0;
+            append(PackedMove.capture(PackedMove.from(first), to, PackedMove.captured(first), promotion),
+                    sequenceCaptured, sequencePath);
+        } else {
+            append(first, 0, 0);
+        }
+        hopCount = 0;
+    }
+
+    // the moves as Game plays them, every hop of a beat sequence is a move
+    public ArrayList<Game.Move> getMoves() {
+        ArrayList<Game.Move> moves = new ArrayList<>(count + hopCount);
+        Board board = new Board(start);
+        int[] path = new int[MoveGenerator.SQUARES];
+        for (int i = 0; i < count; i++) {
+            int n = MoveGenerator.hops(board, turns[i], captures[i], paths[i], path);
+            for (int j = 0; j < n; j++) {
+                moves.add(PackedMove.toMove(path[j]));
+            }
+            board.makeSequence(turns[i], captures[i]);
+        }
+        for (int j = 0; j < hopCount; j++) {
+            moves.add(PackedMove.toMove(hops[j]));
+        }
+        return moves;
+    }
+}
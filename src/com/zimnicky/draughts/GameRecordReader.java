@@ -0,0 +1,273 @@
+package com.zimnicky.draughts;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Reads games written by GameRecordWriter one by one. The input is read in large blocks and
+// every game is taken from the block where it lies. readHeader gives the tags and the result of
+// a game without making its moves, readMoves adds them afterwards, skip passes a game by its length:
+// an archive is searched by the headers at the speed of reading it, the moves are made for the games found only.
+// usage: GameRecordReader file [-headers]
+public class GameRecordReader implements Closeable {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final InputStream input;
+    private byte[] buffer = new byte[BLOCK_SIZE];
+    private int start;          // of the data in the buffer not taken yet
+    private int end;
+    private int position;       // in the current game
+    private int length;         // end of the current game
+    private int bits;           // bits of the current byte already read
+    private int turns = -1;     // turns of the current game not read yet, -1 if its header isn't read
+
+    private final int[] moves = new int[MoveStack.MAX_MOVES];
+    private final int[] captures = new int[MoveStack.MAX_MOVES];
+    private final long[] paths = new long[MoveStack.MAX_MOVES];
+
+    public GameRecordReader(InputStream input) throws IOException {
+        this.input = input;
+        if (!fill(4) || readInt(start) != GameRecordWriter.MAGIC) {
+            throw new IOException("Not a game record file");
+        }
+        start += 4;
+    }
+
+    // makes the buffer hold at least size bytes from start, false at the end of the input
+    private boolean fill(int size) throws IOException {
+        if (end - start >= size) {
+            return true;
+        }
+        if (size > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size));
+        }
+        if (start + size > buffer.length) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        while (end - start < size) {
+            int n = input.read(buffer, end, buffer.length - end);
+            if (n < 0) {
+                return false;
+            }
+            end += n;
+        }
+        return true;
+    }
+
+    private int readInt(int offset) {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+                | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
+    // length of the next game, start is moved past it; -1 at the end of the input
+    private int readLength() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!fill(1)) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new IOException("Broken game record");
+            }
+            int b = buffer[start++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Broken game record");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Broken game record");
+    }
+
+    private boolean next() throws IOException {
+        turns = -1;
+        int size = readLength();
+        if (size < 0) {
+            return false;
+        }
+        if (!fill(size)) {
+            throw new IOException("Broken game record");
+        }
+        position = start;
+        length = start + size;
+        start += size;
+        bits = 0;
+        return true;
+    }
+
+    private int readByte() throws IOException {
+        if (position >= length) {
+            throw new IOException("Broken game record");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int readInt() throws IOException {
+        if (length - position < 4) {
+            throw new IOException("Broken game record");
+        }
+        position += 4;
+        return readInt(position - 4);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Broken game record");
+    }
+
+    private String readString() throws IOException {
+        int size = readVarint();
+        if (size < 0 || size > length - position) {
+            throw new IOException("Broken game record");
+        }
+        String s = new String(buffer, position, size, GameRecordWriter.UTF8);
+        position += size;
+        return s;
+    }
+
+    private int readBits(int count) throws IOException {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            if (position >= length) {
+                throw new IOException("Broken game record");
+            }
+            value = (value << 1) | ((buffer[position] >>> (7 - bits)) & 1);
+            bits++;
+            if (bits == 8) {
+                bits = 0;
+                position++;
+            }
+        }
+        return value;
+    }
+
+    // the game without its moves
+    private GameRecord header() throws IOException {
+        int flags = readByte();
+        GameRecord record;
+        if ((flags & GameRecordWriter.CUSTOM_START) != 0) {
+            int white = readInt();
+            int black = readInt();
+            int queens = readInt();
+            if ((white & black) != 0 || (queens & ~(white | black)) != 0) {
+                throw new IOException("Broken game record");
+            }
+            Board board = new Board();
+            board.set(white, black, queens, readByte() != 0);
+            record = new GameRecord(board);
+        } else {
+            record = new GameRecord();
+        }
+        record.setWinner((flags & 3) - 1);
+        int tags = readVarint();
+        for (int i = 0; i < tags; i++) {
+            String name = readString();
+            record.setTag(name, readString());
+        }
+        turns = readVarint();
+        return record;
+    }
+
+    // the next game, null at the end of the input
+    public GameRecord read() throws IOException {
+        GameRecord record = readHeader();
+        if (record != null) {
+            readMoves(record);
+        }
+        return record;
+    }
+
+    // the tags, the result and the start position of the next game without its moves,
+    // null at the end of the input
+    public GameRecord readHeader() throws IOException {
+        if (!next()) {
+            return null;
+        }
+        return header();
+    }
+
+    // adds the moves to the record just given by readHeader
+    public void readMoves(GameRecord record) throws IOException {
+        if (turns < 0 || record.getTurnCount() > 0) {
+            throw new IllegalStateException("Not the record of the last header");
+        }
+        Board board = record.position();
+        for (; turns > 0; turns--) {
+            int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                    board.isWhiteTurn(), -1, moves, captures, paths);
+            int index = readBits(GameRecordWriter.width(n));
+            if (index >= n) {
+                throw new IOException("Broken game record");
+            }
+            record.addTurn(moves[index], captures[index], paths[index]);
+        }
+        turns = -1;
+    }
+
+    // passes the next game, false at the end of the input
+    public boolean skip() throws IOException {
+        turns = -1;
+        int size = readLength();
+        if (size < 0) {
+            return false;
+        }
+        int available = Math.min(size, end - start);
+        start += available;
+        size -= available;
+        while (size > 0) {
+            long skipped = input.skip(size);
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    throw new IOException("Broken game record");
+                }
+                skipped = 1;
+            }
+            size -= skipped;
+        }
+        return true;
+    }
+
+    public void close() throws IOException {
+        input.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: GameRecordReader file [-headers]");
+            return;
+        }
+        boolean headers = args.length > 1 && args[1].equals("-headers");
+        File file = new File(args[0]);
+        long start = System.nanoTime();
+        GameRecordReader reader = new GameRecordReader(new FileInputStream(file));
+        int games = 0;
+        long turns = 0;
+        try {
+            for (GameRecord record = headers ? reader.readHeader() : reader.read(); record != null;
+                 record = headers ? reader.readHeader() : reader.read()) {
+                games++;
+                turns += record.getTurnCount();
+            }
+        } finally {
+            reader.close();
+        }
+        long time = System.nanoTime() - start;
+        System.out.printf("%d games, %d turns, %d ms, %.1f MB/s%n", games, turns, time / 1000000,
+                file.length() * 1e3 / Math.max(time, 1));
+    }
+}
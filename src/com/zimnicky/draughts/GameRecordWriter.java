@@ -0,0 +1,172 @@
+package com.zimnicky.draughts;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+// Writes games in the compact format read by GameRecordReader. The file starts with MAGIC,
+// then every game is its length in bytes (varint) and:
+//  flags      byte: bits 0-1 the winner + 1, bit 2 -- the game doesn't start from the start position
+//  start      if bit 2: white, black and queens masks (ints), 1 if white is to move (byte)
+//  tags       count (varint) and pairs of name and value, both UTF-8 with the length (varint) before them
+//  turns      count (varint) and the turns as indices in the list of MoveGenerator.generateSequences
+//             (a beat sequence by its path),
+//             each in as few bits as the length of the list needs (none for a forced move),
+//             from the highest bit of a byte, the last byte padded with zeros
+// The indices depend on the order of the generated moves: a change of the order needs a new MAGIC.
+// A beat sequence which isn't over at the end of the record is not written.
+// usage: GameRecordWriter input.pdn output
+public class GameRecordWriter implements Closeable {
+
+    static final int MAGIC = 0x44475231;    // "DGR1"
+    static final int CUSTOM_START = 4;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final OutputStream output;
+    private byte[] buffer = new byte[256];
+    private int length;
+    private int bits;           // bits of the last byte in use, 0 -- the byte isn't started
+
+    private final int[] moves = new int[MoveStack.MAX_MOVES];
+    private final int[] captures = new int[MoveStack.MAX_MOVES];
+    private final long[] paths = new long[MoveStack.MAX_MOVES];
+
+    public GameRecordWriter(OutputStream output) throws IOException {
+        this.output = (output instanceof BufferedOutputStream) ? output : new BufferedOutputStream(output);
+        writeInt(MAGIC);
+        this.output.write(buffer, 0, length);
+        length = 0;
+    }
+
+    private void ensure(int size) {
+        if (length + size > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + size));
+        }
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void writeInt(int i) {
+        writeByte(i >>> 24);
+        writeByte(i >>> 16);
+        writeByte(i >>> 8);
+        writeByte(i);
+    }
+
+    static int writeVarint(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    private void writeVarint(int value) {
+        ensure(5);
+        length = writeVarint(buffer, length, value);
+    }
+
+    private void writeString(String s) {
+        byte[] bytes = s.getBytes(UTF8);
+        writeVarint(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeBits(int value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (bits == 0) {
+                writeByte(0);
+            }
+            buffer[length - 1] |= ((value >>> i) & 1) << (7 - bits);
+            bits = (bits + 1) & 7;
+        }
+    }
+
+    // bits of an index in a list of count moves
+    static int width(int count) {
+        return (count <= 1) ? 0 : 32 - Integer.numberOfLeadingZeros(count - 1);
+    }
+
+    public void write(GameRecord record) throws IOException {
+        length = 0;
+        bits = 0;
+        Board board = record.getStart();
+        boolean custom = !record.isStandardStart();
+        writeByte((record.getWinner() + 1) | (custom ? CUSTOM_START : 0));
+        if (custom) {
+            writeInt(board.getWhiteCells());
+            writeInt(board.getBlackCells());
+            writeInt(board.getQueens());
+            writeByte(board.isWhiteTurn() ? 1 : 0);
+        }
+        writeVarint(record.getTags().size());
+        for (Map.Entry<String, String> tag : record.getTags().entrySet()) {
+            writeString(tag.getKey());
+            writeString(tag.getValue());
+        }
+
+        writeVarint(record.getTurnCount());
+        for (int i = 0; i < record.getTurnCount(); i++) {
+            int move = record.getTurn(i);
+            int captured = record.getCaptured(i);
+            long path = record.getPath(i);
+            int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                    board.isWhiteTurn(), -1, moves, captures, paths);
+            int index = 0;
+            while (index < n && (moves[index] != move || captures[index] != captured || paths[index] != path)) {
+                index++;
+            }
+            if (index == n) {
+                throw new IllegalStateException("Not generated " + PackedMove.toString(move));
+            }
+            writeBits(index, width(n));
+            board.makeSequence(move, captured);
+        }
+
+        byte[] size = new byte[5];
+        output.write(size, 0, writeVarint(size, 0, length));
+        output.write(buffer, 0, length);
+    }
+
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    public void close() throws IOException {
+        output.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: GameRecordWriter input.pdn output");
+            return;
+        }
+        PdnReader reader = new PdnReader(new InputStreamReader(new FileInputStream(new File(args[0])), UTF8));
+        GameRecordWriter writer = new GameRecordWriter(new FileOutputStream(new File(args[1])));
+        int games = 0;
+        try {
+            for (GameRecord record = reader.read(); record != null; record = reader.read()) {
+                writer.write(record);
+                games++;
+            }
+        } finally {
+            reader.close();
+            writer.close();
+        }
+        System.out.println(games + " games");
+    }
+}
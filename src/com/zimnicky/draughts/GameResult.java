@@ -0,0 +1,37 @@
+package com.zimnicky.draughts;
+
+import java.util.ArrayList;
+
+// Outcome of a game played to the end by GameRunner.
+public class GameResult {
+
+    private final int winner;               // 0 -- first player, 1 -- second player, Game.DRAW
+    private final ArrayList<Game.Move> moves;
+    private final long time;                // ns
+
+    GameResult(int winner, ArrayList<Game.Move> moves, long time) {
+        this.winner = winner;
+        this.moves = moves;
+        this.time = time;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public boolean isDraw() {
+        return winner == Game.DRAW;
+    }
+
+    public ArrayList<Game.Move> getMoves() {
+        return moves;
+    }
+
+    public long getTimeMillis() {
+        return time / 1000000;
+    }
+
+    public String toString() {
+        return (isDraw() ? "draw" : "winner " + winner) + ", " + moves.size() + " moves, " + getTimeMillis() + " ms";
+    }
+}
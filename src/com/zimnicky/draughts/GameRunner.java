@@ -0,0 +1,180 @@
+package com.zimnicky.draughts;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Plays games without UI on the caller's thread, and matches of many games on a thread pool.
+// usage: GameRunner games [threads] [depth1] [depth2] [moveLimit]
+public class GameRunner {
+
+    public static final int DEFAULT_MOVE_LIMIT = 150;   // turns
+    public static final int DEFAULT_OPENING_MOVES = 4;  // random turns of each player before the engines start
+
+    // every game of a match needs its own players, they keep search state
+    public interface PlayerFactory {
+        Player create();
+    }
+
+    public static class Summary {
+        private int firstWins;
+        private int secondWins;
+        private int draws;
+        private long moves;
+        private long time;      // ns
+
+        public int getFirstWins() {
+            return firstWins;
+        }
+
+        public int getSecondWins() {
+            return secondWins;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public int getGames() {
+            return firstWins + secondWins + draws;
+        }
+
+        public long getMoves() {
+            return moves;
+        }
+
+        public long getTimeMillis() {
+            return time / 1000000;
+        }
+
+        public double getGamesPerSecond() {
+            return time <= 0 ? 0 : getGames() * 1e9 / time;
+        }
+
+        // share of points of the first player, a draw is half a point
+        public double getFirstScore() {
+            return getGames() == 0 ? 0 : (firstWins + 0.5 * draws) / getGames();
+        }
+
+        public String toString() {
+            return String.format("%d games: +%d =%d -%d (%.1f%%), %d moves, %d ms, %.2f games/s",
+                    getGames(), firstWins, draws, secondWins, 100 * getFirstScore(), moves, getTimeMillis(),
+                    getGamesPerSecond());
+        }
+    }
+
+    // plays random legal turns at the start of the game, then lets the wrapped player move;
+    // a beat sequence is one turn, its hops are all random or all made by the wrapped player
+    private static class OpeningPlayer extends Player {
+        private final Player player;
+        private final Random random;
+        private int randomMoves;        // turns
+        private boolean randomTurn;
+
+        OpeningPlayer(Player player, int randomMoves, long seed) {
+            this.player = player;
+            this.randomMoves = randomMoves;
+            random = new Random(seed);
+        }
+
+        public void setColor(Color color) {
+            super.setColor(color);
+            player.setColor(color);
+        }
+
+        public Game.Move makeMove(Game game, Game.Move lastMove) {
+            if (lastMove == null) {     // a new turn, not a hop of a beat sequence
+                randomTurn = randomMoves > 0;
+                if (randomTurn) {
+                    randomMoves--;
+                }
+            }
+            if (!randomTurn) {
+                return player.makeMove(game, lastMove);
+            }
+            ArrayList<Game.Move> moves = game.getLegalMoves().getMoves();
+            if (moves.isEmpty()) {
+                return null;
+            }
+            return moves.get(random.nextInt(moves.size()));
+        }
+    }
+
+    // plays the game to the end on the calling thread, the first player is white
+    public static GameResult play(Player first, Player second, int moveLimit) {
+        Game game = new Game(first, second, false);
+        game.setMoveLimit(moveLimit);
+        long start = System.nanoTime();
+        game.run();
+        return new GameResult(game.getWinner(), game.getMoves(), System.nanoTime() - start);
+    }
+
+    // plays the games on the given number of threads; the players change colours every game
+    public static Summary match(final PlayerFactory first, final PlayerFactory second, int games, int threads,
+                                final int moveLimit, final int openingMoves, final long seed)
+            throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        try {
+            ArrayList<Future<GameResult>> results = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                final int game = i;
+                results.add(executor.submit(new Callable<GameResult>() {
+                    public GameResult call() {
+                        // the seeds go with the colours, so both games of a pair start with the same opening
+                        long whiteSeed = seed + 2 * (game / 2);
+                        boolean firstIsWhite = game % 2 == 0;
+                        Player a = new OpeningPlayer(first.create(), openingMoves,
+                                firstIsWhite ? whiteSeed : whiteSeed + 1);
+                        Player b = new OpeningPlayer(second.create(), openingMoves,
+                                firstIsWhite ? whiteSeed + 1 : whiteSeed);
+                        return firstIsWhite ? play(a, b, moveLimit) : play(b, a, moveLimit);
+                    }
+                }));
+            }
+            for (int i = 0; i < games; i++) {
+                GameResult result = results.get(i).get();
+                summary.moves += result.getMoves().size();
+                if (result.isDraw()) {
+                    summary.draws++;
+                } else if ((result.getWinner() == 0) == (i % 2 == 0)) {
+                    summary.firstWins++;
+                } else {
+                    summary.secondWins++;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        summary.time = System.nanoTime() - start;
+        return summary;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: GameRunner games [threads] [depth1] [depth2] [moveLimit]");
+            return;
+        }
+        int games = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final byte first = args.length > 2 ? Byte.parseByte(args[2]) : 4;
+        final byte second = args.length > 3 ? Byte.parseByte(args[3]) : first;
+        int moveLimit = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MOVE_LIMIT;
+
+        Summary summary = match(new PlayerFactory() {
+            public Player create() {
+                return new ABAIPlayer(first);
+            }
+        }, new PlayerFactory() {
+            public Player create() {
+                return new ABAIPlayer(second);
+            }
+        }, games, threads, moveLimit, DEFAULT_OPENING_MOVES, System.nanoTime());
+        System.out.println("depth " + first + " vs depth " + second + ": " + summary);
+    }
+}
@@ -7,6 +7,7 @@ public class HumanPlayer extends Player {
     private Game.Move move;
     private Game.Move previousMove;
     private Game game;
+    private MoveCallback callback;  // set while a game started by Game.start waits for the move
 
     synchronized private void waitMove() {
         waitingMoveStatus = true;
@@ -36,6 +37,13 @@ public class HumanPlayer extends Player {
         return move;
     }
 
+    synchronized public void requestMove(Game game, Game.Move lastMove, MoveCallback callback) {
+        this.game = game;
+        previousMove = lastMove;
+        this.callback = callback;
+        waitingMoveStatus = true;
+    }
+
     public boolean canMove(Game.Move move){
         return game.canMove(move, previousMove);
     }
@@ -44,12 +52,29 @@ public class HumanPlayer extends Player {
         return waitingMoveStatus;
     }
 
-    synchronized public void setMove(Game.Move move) {
-        if (!waitingMoveStatus){
-            return;
+    // returns false if the move is not expected now
+    public boolean setMove(Game.Move move) {
+        MoveCallback answer;
+        Game.Move made;
+        synchronized (this) {
+            if (!waitingMoveStatus) {
+                return false;
+            }
+            this.move = new Game.Move(move);
+            if (callback == null) {
+                waitingMoveStatus = false;
+                notify();
+                return true;
+            }
+            if (!game.canMove(this.move, previousMove)) {
+                return false;   // still waiting for a correct move
+            }
+            answer = callback;
+            made = this.move;
+            callback = null;
+            waitingMoveStatus = false;
         }
-        this.move = new Game.Move(move);
-        waitingMoveStatus = false;
-        notify();
+        answer.moveMade(made);
+        return true;
     }
 }
@@ -0,0 +1,120 @@
+package com.zimnicky.draughts;
+
+import java.util.ArrayList;
+
+// All legal moves of one turn, generated once and indexed by the start square
+// and by the (from, to) pair. Immutable, so it can be read from any thread.
+public class LegalMoves {
+
+    private final Player.Color color;
+    private final int continuation;         // square of the piece which must go on beating, -1 if none
+    private final int[] moves;              // packed, grouped by the start square
+    private final Game.Move[] list;         // the same moves
+    private final int[] first = new int[MoveGenerator.SQUARES + 1];   // moves from square s are first[s]..first[s+1]-1
+    private final int[] targets = new int[MoveGenerator.SQUARES];     // bit mask of destinations of each start square
+
+    LegalMoves(Board board, Player.Color color, int continuation) {
+        this.color = color;
+        this.continuation = continuation;
+        int[] buffer = new int[MoveStack.MAX_MOVES];
+        int count = MoveGenerator.generate(board, color, continuation, buffer);
+
+        for (int i = 0; i < count; i++) {
+            first[PackedMove.from(buffer[i]) + 1]++;
+        }
+        for (int s = 0; s < MoveGenerator.SQUARES; s++) {
+            first[s + 1] += first[s];
+        }
+        moves = new int[count];
+        list = new Game.Move[count];
+        int[] next = first.clone();
+        for (int i = 0; i < count; i++) {
+            int from = PackedMove.from(buffer[i]);
+            int k = next[from]++;
+            moves[k] = buffer[i];
+            list[k] = PackedMove.toMove(buffer[i]);
+            targets[from] |= 1 << PackedMove.to(buffer[i]);
+        }
+    }
+
+    public Player.Color getColor() {
+        return color;
+    }
+
+    public int getContinuation() {
+        return continuation;
+    }
+
+    public int getCount() {
+        return moves.length;
+    }
+
+    public boolean isEmpty() {
+        return moves.length == 0;
+    }
+
+    // captures are mandatory, so either all moves beat or none
+    public boolean isCapture() {
+        return moves.length > 0 && PackedMove.isCapture(moves[0]);
+    }
+
+    public boolean canMoveFrom(int row, int col) {
+        return isOnBoard(row, col) && targets[MoveGenerator.square(row, col)] != 0;
+    }
+
+    // returns null if there are no moves from this cell
+    public ArrayList<Game.Move> getMoves(int row, int col) {
+        if (!canMoveFrom(row, col)) {
+            return null;
+        }
+        int s = MoveGenerator.square(row, col);
+        ArrayList<Game.Move> result = new ArrayList<>(first[s + 1] - first[s]);
+        for (int i = first[s]; i < first[s + 1]; i++) {
+            result.add(list[i]);
+        }
+        return result;
+    }
+
+    public ArrayList<Game.Move> getMoves() {
+        ArrayList<Game.Move> result = new ArrayList<>(list.length);
+        for (Game.Move move : list) {
+            result.add(move);
+        }
+        return result;
+    }
+
+    // packed move from one square to the other, PackedMove.NONE if it is not legal
+    int find(int from, int to) {
+        if ((targets[from] & (1 << to)) == 0) {
+            return PackedMove.NONE;
+        }
+        for (int i = first[from]; i < first[from + 1]; i++) {
+            if (PackedMove.to(moves[i]) == to) {
+                return moves[i];
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    // sets the result of the move (BEAT, MOVED or WRONG), returns true if the move is legal
+    public boolean check(Game.Move move) {
+        if (move == null) {
+            return false;
+        }
+        int packed = PackedMove.NONE;
+        if (isOnBoard(move.getStartRow(), move.getStartCol()) && isOnBoard(move.getDistRow(), move.getDistCol())) {
+            packed = find(MoveGenerator.square(move.getStartRow(), move.getStartCol()),
+                    MoveGenerator.square(move.getDistRow(), move.getDistCol()));
+        }
+        if (packed == PackedMove.NONE) {
+            move.setResult(Game.MoveResult.WRONG);
+            return false;
+        }
+        move.setResult(PackedMove.isCapture(packed) ? Game.MoveResult.BEAT : Game.MoveResult.MOVED);
+        return true;
+    }
+
+    private static boolean isOnBoard(int row, int col) {
+        return row >= 0 && col >= 0 && row < 8 && col < 8 && ((row + col) & 1) == 1;
+    }
+}
@@ -7,8 +7,8 @@ import android.view.View;
 import android.widget.*;
 
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class Main extends Activity {
@@ -17,6 +17,8 @@ public class Main extends Activity {
 
     private Game game;
     private HumanPlayer player;
+    private ABAIPlayer player2;
+    private ExecutorService executor;      // the game thread
     private Game.Move currentMove;
     private Game.Move opponentsLastMove;
     private ArrayList<Game.Move> availableMoves;
@@ -25,23 +27,35 @@ public class Main extends Activity {
     BoardCellView[][] cellViews;
 
     private void repaintBoard(){
-        Board board = game.getBoard();
+        BoardSnapshot board = game.getSnapshot();
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 8; j++) {
                 Board.Cell cell = board.getCell(i,j);
                 if (cell != Board.Cell.INVALID) {
                     cellViews[i][j].setCell(cell);
-                    if (cellViews[i][j].getCell().isWhite()) {
-                        if (currentMove.getStartRow() == -1) {
-                                ArrayList<Game.Move> moves = game.getAvailableMoves(i, j);
-                            if (moves != null) {
-                                cellViews[i][j].setCanSelect(true);
-                            }
-                        }
-                        else {
-                            cellViews[i][j].setCanSelect(false);
-                        }
-                    }
+                }
+            }
+        }
+    }
+
+    // redraws the squares set in the mask (bit = row * 4 + col / 2)
+    private void repaintSquares(int changed, BoardSnapshot board){
+        while (changed != 0) {
+            int square = Integer.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            int row = MoveGenerator.row(square);
+            int col = MoveGenerator.col(square);
+            cellViews[row][col].setCell(board.getCell(row, col));
+        }
+    }
+
+    // marks the pieces which can start a move
+    private void showMoveStartCells(boolean show){
+        LegalMoves legal = game.getLegalMoves();
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                if (cellViews[i][j].getCell().isWhite()) {
+                    cellViews[i][j].setCanSelect(show && legal.canMoveFrom(i, j));
                 }
             }
         }
@@ -80,6 +94,7 @@ public class Main extends Activity {
             unselectMoveStartCell();
             currentMove.setStartRow(-1);
             currentMove.setStartCol(-1);
+            showMoveStartCells(true);
             return;
         }
 
@@ -87,6 +102,7 @@ public class Main extends Activity {
             ArrayList<Game.Move> moves = game.getAvailableMoves(view.getRow(), view.getCol());
             if (moves != null) {
                 unselectMoveStartCell();
+                showMoveStartCells(false);
                 for (Game.Move move : moves) {
                     cellViews[move.getDistRow()][move.getDistCol()].setCanSelect(true);
                 }
@@ -98,7 +114,7 @@ public class Main extends Activity {
         } else {
             currentMove.setDistRow(view.getRow());
             currentMove.setDistCol(view.getCol());
-            if (player.canMove(currentMove)) {
+            if (player.canMove(currentMove) && player.setMove(currentMove)) {
                 unselectMoveStartCell();
                 doingMove = false;
                 availableMoves = null;
@@ -106,39 +122,41 @@ public class Main extends Activity {
                     cellViews[opponentsLastMove.getStartRow()][opponentsLastMove.getStartCol()].setOpponentsPath(false);
                     cellViews[opponentsLastMove.getDistRow()][opponentsLastMove.getDistCol()].setOpponentsPath(false);
                 }
-                player.setMove(currentMove);
             }
         }
     }
 
-    private void checkCurrentPlayer(){
+    private void checkCurrentPlayer(int current){
         if (doingMove){
             return;
         }
 
-        switch (game.getWinner()){
+        if (current != 0){
+            gameStatusText.setText("Opponent's move!");
+        }
+        else{
+            currentMove.setStartRow(-1);
+            currentMove.setStartCol(-1);
+            doingMove = true;
+            gameStatusText.setText("Your move!");
+            opponentsLastMove = game.getLastMove(1);
+            if (opponentsLastMove != null) {
+                cellViews[opponentsLastMove.getStartRow()][opponentsLastMove.getStartCol()].setOpponentsPath(true);
+                cellViews[opponentsLastMove.getDistRow()][opponentsLastMove.getDistCol()].setOpponentsPath(true);
+            }
+            showMoveStartCells(true);
+        }
+    }
+
+    private void showWinner(int winner){
+        doingMove = false;
+        switch (winner){
             case 0: gameStatusText.setText("You win!");
                 break;
             case 1: gameStatusText.setText("You lose!");
                 break;
-            default:
-                if (!player.isWaitMove()){
-                    doingMove = false;
-                    gameStatusText.setText("Opponent's move!");
-                }
-                else{
-                    currentMove.setStartRow(-1);
-                    currentMove.setStartCol(-1);
-                    doingMove = true;
-                    gameStatusText.setText("Your move!");
-                    opponentsLastMove = game.getLastMove(1);
-                    if (opponentsLastMove != null) {
-                        cellViews[opponentsLastMove.getStartRow()][opponentsLastMove.getStartCol()].setOpponentsPath(true);
-                        cellViews[opponentsLastMove.getDistRow()][opponentsLastMove.getDistCol()].setOpponentsPath(true);
-                    }
-                }
+            default: gameStatusText.setText("Draw!");
         }
-
     }
 
     private void createBoard() {
@@ -183,27 +201,51 @@ public class Main extends Activity {
         createBoard();
 
         player = new HumanPlayer();
-        Player player2 = new ABAIPlayer((byte)5);
+        player2 = new ABAIPlayer((byte)5);
+        player2.setPonder(true);
 
         currentMove = new Game.Move();
-        game = new Game(player, player2);
+        game = new Game(player, player2, false);
 
         gameStatusText = (TextView) findViewById(R.id.gameStatusText);
+        repaintBoard();
 
+        // the listener is called on the game thread, the views are changed on the UI thread
+        game.addListener(new Game.GameListener() {
+            public void moveApplied(Game game, Game.Move move, final BoardSnapshot before, final BoardSnapshot after) {
+                runOnUiThread(new Runnable() {
+                    public void run() {
+                        repaintSquares(before.changedSquares(after), after);
+                    }
+                });
+            }
 
-        Timer timer = new Timer();
-
-        timer.schedule(new TimerTask() {
-            public void run() {
+            public void turnChanged(Game game, final int current, Game.Move lastMove) {
                 runOnUiThread(new Runnable() {
                     public void run() {
-                        repaintBoard();
-                        checkCurrentPlayer();
+                        checkCurrentPlayer(current);
                     }
                 });
             }
 
-        }, 0, 100);
+            public void gameOver(Game game, final int winner) {
+                player2.stopPondering();
+                runOnUiThread(new Runnable() {
+                    public void run() {
+                        showWinner(winner);
+                    }
+                });
+                executor.shutdownNow();
+            }
+        });
+        executor = Executors.newSingleThreadExecutor();
+        game.start(executor);
+    }
 
+    @Override
+    protected void onDestroy() {
+        player2.stopPondering();
+        executor.shutdownNow();
+        super.onDestroy();
     }
 }
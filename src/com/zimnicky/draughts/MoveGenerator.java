@@ -0,0 +1,421 @@
+package com.zimnicky.draughts;
+
+import java.util.ArrayList;
+
+// Move generator working directly on the 32-bit masks of Board.
+// Square index is row*4 + col/2 (the same layout Board uses), so moving along
+// a diagonal is a shift by 3, 4 or 5 depending on the row parity.
+public final class MoveGenerator {
+
+    static final int SQUARES = 32;
+    static final int PATH_BITS = 5;     // per hop in the paths of beat sequences
+
+    static final int EVEN_ROWS  = 0x0F0F0F0F;
+    static final int ODD_ROWS   = 0xF0F0F0F0;
+    static final int RIGHT_EDGE = 0x08080808;   // column 7
+    static final int LEFT_EDGE  = 0x10101010;   // column 0
+
+    static final int WHITE_PROMOTION = 0x0000000F; // row 0
+    static final int BLACK_PROMOTION = 0xF0000000; // row 7
+
+    // same order as Game.directions: {1,1},{1,-1},{-1,-1},{-1,1}; opposite direction is dir ^ 2
+    private static final int[][] directions = {{1, 1}, {1, -1}, {-1, -1}, {-1, 1}};
+
+    static final int[][] NEIGHBOUR = new int[4][SQUARES]; // -1 if there is no neighbour
+    static final int[][] RAYS = new int[4][SQUARES];      // all squares along the diagonal, start excluded
+
+    static {
+        for (int sq = 0; sq < SQUARES; sq++) {
+            for (int d = 0; d < 4; d++) {
+                int r = row(sq) + directions[d][0];
+                int c = col(sq) + directions[d][1];
+                NEIGHBOUR[d][sq] = isOnBoard(r, c) ? square(r, c) : -1;
+                int ray = 0;
+                while (isOnBoard(r, c)) {
+                    ray |= 1 << square(r, c);
+                    r += directions[d][0];
+                    c += directions[d][1];
+                }
+                RAYS[d][sq] = ray;
+            }
+        }
+    }
+
+    private MoveGenerator() {}
+
+    private static boolean isOnBoard(int row, int col) {
+        return row >= 0 && col >= 0 && row < 8 && col < 8;
+    }
+
+    static int square(int row, int col) {
+        return (row << 2) | (col >> 1);
+    }
+
+    static int row(int square) {
+        return square >> 2;
+    }
+
+    static int col(int square) {
+        return ((square & 3) << 1) | (((square >> 2) & 1) ^ 1);
+    }
+
+    // moves every bit of the mask one step in the direction, bits leaving the board are dropped
+    static int shift(int mask, int dir) {
+        switch (dir) {
+            case 0:  return ((mask & EVEN_ROWS & ~RIGHT_EDGE) << 5) | ((mask & ODD_ROWS) << 4);
+            case 1:  return ((mask & EVEN_ROWS) << 4) | ((mask & ODD_ROWS & ~LEFT_EDGE) << 3);
+            case 2:  return ((mask & EVEN_ROWS) >>> 4) | ((mask & ODD_ROWS & ~LEFT_EDGE) >>> 5);
+            default: return ((mask & EVEN_ROWS & ~RIGHT_EDGE) >>> 3) | ((mask & ODD_ROWS) >>> 4);
+        }
+    }
+
+    // nearest square of the mask looking from the start of a ray in the direction
+    static int firstOnRay(int mask, int dir) {
+        if (dir < 2) {
+            return Integer.numberOfTrailingZeros(mask);
+        }
+        return 31 - Integer.numberOfLeadingZeros(mask);
+    }
+
+    // squares between the square and the first occupied one in the direction
+    static int freeRay(int square, int dir, int occupied) {
+        int ray = RAYS[dir][square];
+        int blockers = ray & occupied;
+        if (blockers == 0) {
+            return ray;
+        }
+        int b = firstOnRay(blockers, dir);
+        return ray & ~RAYS[dir][b] & ~(1 << b);
+    }
+
+    // landing squares of captures of the piece on the square in the direction, 0 if there are none
+    static int captureTargets(int square, boolean queen, int dir, int opponent, int occupied) {
+        int victim;
+        if (queen) {
+            int blockers = RAYS[dir][square] & occupied;
+            if (blockers == 0) {
+                return 0;
+            }
+            victim = firstOnRay(blockers, dir);
+        } else {
+            victim = NEIGHBOUR[dir][square];
+            if (victim < 0) {
+                return 0;
+            }
+        }
+        if ((opponent & (1 << victim)) == 0) {
+            return 0;
+        }
+        int targets = freeRay(victim, dir, occupied);
+        if (!queen) {
+            targets &= shift(1 << victim, dir);
+        }
+        return targets;
+    }
+
+    static boolean canCapture(int square, int own, int opponent, int queens) {
+        int bit = 1 << square;
+        if ((own & bit) == 0) {
+            return false;
+        }
+        boolean queen = (queens & bit) != 0;
+        int occupied = own | opponent;
+        for (int d = 0; d < 4; d++) {
+            if (captureTargets(square, queen, d, opponent, occupied) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean canCapture(int own, int opponent, int queens) {
+        int empty = ~(own | opponent);
+        int men = own & ~queens;
+        for (int d = 0; d < 4; d++) {
+            if ((shift(shift(men, d) & opponent, d) & empty) != 0) {
+                return true;
+            }
+        }
+        for (int q = own & queens; q != 0; q &= q - 1) {
+            if (canCapture(Integer.numberOfTrailingZeros(q), own, opponent, queens)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean canCapture(Board board, int row, int col) {
+        return canCapture(board.getWhiteCells(), board.getBlackCells(), board.getQueens(), row, col);
+    }
+
+    static boolean canCapture(int white, int black, int queens, int row, int col) {
+        if (!isOnBoard(row, col) || ((row + col) & 1) == 0) {
+            return false;
+        }
+        int sq = square(row, col);
+        if ((white & (1 << sq)) != 0) {
+            return canCapture(sq, white, black, queens);
+        }
+        return canCapture(sq, black, white, queens);
+    }
+
+    static boolean canCapture(Board board, int sq) {
+        int white = board.getWhiteCells();
+        int black = board.getBlackCells();
+        if ((white & (1 << sq)) != 0) {
+            return canCapture(sq, white, black, board.getQueens());
+        }
+        return canCapture(sq, black, white, board.getQueens());
+    }
+
+    public static boolean canCapture(Board board, Player.Color color) {
+        if (color == Player.Color.WHITE) {
+            return canCapture(board.getWhiteCells(), board.getBlackCells(), board.getQueens());
+        }
+        return canCapture(board.getBlackCells(), board.getWhiteCells(), board.getQueens());
+    }
+
+    private static int promotionRow(int men, boolean isWhite) {
+        return men & (isWhite ? WHITE_PROMOTION : BLACK_PROMOTION);
+    }
+
+    private static int addCaptures(int[] moves, int count, int from, boolean isWhite, int own, int opponent, int queens) {
+        boolean queen = (queens & (1 << from)) != 0;
+        int occupied = own | opponent;
+        for (int d = 0; d < 4; d++) {
+            int targets = captureTargets(from, queen, d, opponent, occupied);
+            if (targets == 0) {
+                continue;
+            }
+            int victim = queen ? firstOnRay(RAYS[d][from] & occupied, d) : NEIGHBOUR[d][from];
+            int promotions = queen ? 0 : promotionRow(targets, isWhite);
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                moves[count++] = PackedMove.capture(from, to, victim, (promotions & (1 << to)) != 0);
+            }
+        }
+        return count;
+    }
+
+    // writes all legal moves of the side into the buffer and returns their count,
+    // continuation is the square of the piece which has to go on beating, -1 if there is none
+    static int generate(int white, int black, int queens, boolean isWhite, int continuation, int[] moves) {
+        int own = isWhite ? white : black;
+        int opponent = isWhite ? black : white;
+        int occupied = white | black;
+        int empty = ~occupied;
+        int count = 0;
+
+        if (continuation >= 0 && canCapture(continuation, own, opponent, queens)) {
+            return addCaptures(moves, count, continuation, isWhite, own, opponent, queens);
+        }
+
+        int men = own & ~queens;
+        for (int d = 0; d < 4; d++) {
+            int targets = shift(shift(men, d) & opponent, d) & empty;
+            int promotions = promotionRow(targets, isWhite);
+            int back = d ^ 2;
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                int victim = NEIGHBOUR[back][to];
+                moves[count++] = PackedMove.capture(NEIGHBOUR[back][victim], to, victim, (promotions & (1 << to)) != 0);
+            }
+        }
+        for (int q = own & queens; q != 0; q &= q - 1) {
+            count = addCaptures(moves, count, Integer.numberOfTrailingZeros(q), isWhite, own, opponent, queens);
+        }
+        if (count > 0) {
+            return count;
+        }
+
+        int firstDir = isWhite ? 2 : 0;  // white men go to row 0, black ones to row 7
+        for (int d = firstDir; d < firstDir + 2; d++) {
+            int targets = shift(men, d) & empty;
+            int promotions = promotionRow(targets, isWhite);
+            int back = d ^ 2;
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                moves[count++] = PackedMove.quiet(NEIGHBOUR[back][to], to, (promotions & (1 << to)) != 0);
+            }
+        }
+        for (int q = own & queens; q != 0; q &= q - 1) {
+            int from = Integer.numberOfTrailingZeros(q);
+            for (int d = 0; d < 4; d++) {
+                for (int targets = freeRay(from, d, occupied); targets != 0; targets &= targets - 1) {
+                    moves[count++] = PackedMove.quiet(from, Integer.numberOfTrailingZeros(targets), false);
+                }
+            }
+        }
+        return count;
+    }
+
+    // Beat sequences: the piece is lifted from the start square, beaten pieces are removed at once
+    // and a man reaching its promotion row goes on beating as a queen, the same as hop by hop in Board.
+    private static int addSequences(int[] moves, int[] captures, long[] paths, int count, int start, int firstVictim,
+                                    int square, boolean isWhite, int own, int opponent, int queens, int captured,
+                                    boolean promoted, long path) {
+        boolean queen = (queens & (1 << square)) != 0;
+        int occupied = own | opponent;
+        for (int d = 0; d < 4; d++) {
+            int targets = captureTargets(square, queen, d, opponent, occupied);
+            if (targets == 0) {
+                continue;
+            }
+            int victim = queen ? firstOnRay(RAYS[d][square] & occupied, d) : NEIGHBOUR[d][square];
+            int promotions = queen ? 0 : promotionRow(targets, isWhite);
+            int first = (firstVictim < 0) ? victim : firstVictim;
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                boolean promotion = promoted || (promotions & (1 << to)) != 0;
+                int nextOwn = (own & ~(1 << square)) | (1 << to);
+                int nextOpponent = opponent & ~(1 << victim);
+                int nextQueens = queens & ~(1 << square) & ~(1 << victim);
+                if (queen || promotion) {
+                    nextQueens |= 1 << to;
+                }
+                int nextCaptured = captured | (1 << victim);
+                long nextPath = path | ((long) to << (PATH_BITS * Integer.bitCount(captured)));
+                if (canCapture(to, nextOwn, nextOpponent, nextQueens)) {
+                    count = addSequences(moves, captures, paths, count, start, first, to, isWhite, nextOwn,
+                            nextOpponent, nextQueens, nextCaptured, promotion, nextPath);
+                } else {
+                    captures[count] = nextCaptured;
+                    if (paths != null) {
+                        paths[count] = nextPath;
+                    }
+                    moves[count++] = PackedMove.capture(start, to, first, promotion);
+                }
+            }
+        }
+        return count;
+    }
+
+    // Like generate, but every beat sequence is one move from its start to its last square with
+    // the first beaten piece; the masks of all beaten pieces go to captures (0 for a quiet move).
+    // The same start, end and first piece may be shared by sequences beating different pieces.
+    static int generateSequences(int white, int black, int queens, boolean isWhite, int continuation,
+                                 int[] moves, int[] captures) {
+        return generateSequences(white, black, queens, isWhite, continuation, moves, captures, null);
+    }
+
+    // Also gives the path of every beat sequence: the square after each hop, PATH_BITS per hop from
+    // the lowest bits (0 for a quiet move). Every path is a separate move, so sequences beating
+    // the same pieces between the same squares along different ways are all in the list.
+    static int generateSequences(int white, int black, int queens, boolean isWhite, int continuation,
+                                 int[] moves, int[] captures, long[] paths) {
+        int count = generate(white, black, queens, isWhite, continuation, moves);
+        if (count == 0 || !PackedMove.isCapture(moves[0])) {
+            for (int i = 0; i < count; i++) {
+                captures[i] = 0;
+                if (paths != null) {
+                    paths[i] = 0;
+                }
+            }
+            return count;
+        }
+        int own = isWhite ? white : black;
+        int opponent = isWhite ? black : white;
+        int starts = (continuation >= 0) ? 1 << continuation : 0;
+        if (starts == 0) {
+            for (int i = 0; i < count; i++) {
+                starts |= 1 << PackedMove.from(moves[i]);
+            }
+        }
+        count = 0;
+        for (; starts != 0; starts &= starts - 1) {
+            int from = Integer.numberOfTrailingZeros(starts);
+            count = addSequences(moves, captures, paths, count, from, -1, from, isWhite, own, opponent, queens, 0,
+                    false, 0);
+        }
+        return count;
+    }
+
+    // square after the hop of a path made by generateSequences
+    static int pathSquare(long path, int hop) {
+        return (int) (path >>> (PATH_BITS * hop)) & 31;
+    }
+
+    // splits a move made by generateSequences along its path into the hops Board.makeMove plays,
+    // returns their count, 0 if the path doesn't fit the move
+    static int hops(Board board, int move, int captured, long path, int[] hops) {
+        if (!PackedMove.isCapture(move)) {
+            hops[0] = move;
+            return 1;
+        }
+        Board next = new Board(board);
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int count = Integer.bitCount(captured);
+        for (int i = 0; i < count; i++) {
+            int n = generate(next.getWhiteCells(), next.getBlackCells(), next.getQueens(), next.isWhiteTurn(),
+                    next.getContinuation(), moves);
+            int from = (i == 0) ? PackedMove.from(move) : pathSquare(path, i - 1);
+            int to = pathSquare(path, i);
+            hops[i] = PackedMove.NONE;
+            for (int j = 0; j < n; j++) {
+                if (PackedMove.isCapture(moves[j]) && PackedMove.from(moves[j]) == from && PackedMove.to(moves[j]) == to
+                        && (PackedMove.capturedMask(moves[j]) & captured) != 0) {
+                    hops[i] = moves[j];
+                }
+            }
+            if (hops[i] == PackedMove.NONE) {
+                return 0;
+            }
+            next.makeMove(hops[i]);
+        }
+        return (next.getContinuation() < 0 && pathSquare(path, count - 1) == PackedMove.to(move)) ? count : 0;
+    }
+
+    // splits a move made by generateSequences into the hops Board.makeMove plays, returns their count;
+    // of the paths beating the same pieces between the same squares the first one is taken
+    static int hops(Board board, int move, int captured, int[] hops) {
+        if (!PackedMove.isCapture(move)) {
+            hops[0] = move;
+            return 1;
+        }
+        boolean queen = PackedMove.isPromotion(move) || (board.getQueens() & (1 << PackedMove.from(move))) != 0;
+        return findHops(new Board(board), move, captured, queen, hops, 0);
+    }
+
+    private static int findHops(Board board, int move, int captured, boolean queen, int[] hops, int count) {
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int n = generate(board.getWhiteCells(), board.getBlackCells(), board.getQueens(), board.isWhiteTurn(),
+                board.getContinuation(), moves);
+        for (int i = 0; i < n; i++) {
+            int hop = moves[i];
+            int victim = PackedMove.capturedMask(hop);
+            if ((count == 0 && (PackedMove.from(hop) != PackedMove.from(move)
+                    || PackedMove.captured(hop) != PackedMove.captured(move))) || (victim & captured) == 0) {
+                continue;
+            }
+            hops[count] = hop;
+            int undo = board.makeMove(hop);
+            int found = 0;
+            if (board.getContinuation() >= 0) {
+                found = findHops(board, move, captured & ~victim, queen, hops, count + 1);
+            } else if (victim == captured && PackedMove.to(hop) == PackedMove.to(move)
+                    && ((board.getQueens() & (1 << PackedMove.to(move))) != 0) == queen) {
+                found = count + 1;
+            }
+            board.undoMove(undo);
+            if (found > 0) {
+                return found;
+            }
+        }
+        return 0;
+    }
+
+    public static int generate(Board board, Player.Color color, int continuation, int[] moves) {
+        return generate(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                color == Player.Color.WHITE, continuation, moves);
+    }
+
+    public static ArrayList<Game.Move> generate(Board board, Player.Color color, int continuation) {
+        int[] buffer = new int[MoveStack.MAX_MOVES];
+        int count = generate(board, color, continuation, buffer);
+        ArrayList<Game.Move> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(PackedMove.toMove(buffer[i]));
+        }
+        return moves;
+    }
+}
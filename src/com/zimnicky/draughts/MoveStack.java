@@ -0,0 +1,83 @@
+package com.zimnicky.draughts;
+
+// Preallocated move buffers, one per ply, so the search never allocates moves.
+public class MoveStack {
+
+    public static final int MAX_MOVES = 256;
+
+    private final int[][] moves;
+    private final int[][] scores;   // ordering keys, filled by the search
+    private final int[][] captures; // beaten pieces of the moves made by generateSequences
+    private final int[] counts;
+
+    public MoveStack(int maxPly) {
+        moves = new int[maxPly][MAX_MOVES];
+        scores = new int[maxPly][MAX_MOVES];
+        captures = new int[maxPly][MAX_MOVES];
+        counts = new int[maxPly];
+    }
+
+    public int getMaxPly() {
+        return moves.length;
+    }
+
+    // fills the buffer of the ply with all legal moves, returns their count
+    public int generate(int ply, Board board, boolean white, int continuation) {
+        counts[ply] = MoveGenerator.generate(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                white, continuation, moves[ply]);
+        return counts[ply];
+    }
+
+    // fills the buffer of the ply with the legal moves, every beat sequence is one move
+    public int generateSequences(int ply, Board board, boolean white, int continuation) {
+        counts[ply] = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                white, continuation, moves[ply], captures[ply]);
+        return counts[ply];
+    }
+
+    public int[] getMoves(int ply) {
+        return moves[ply];
+    }
+
+    public int getCount(int ply) {
+        return counts[ply];
+    }
+
+    public int getMove(int ply, int i) {
+        return moves[ply][i];
+    }
+
+    public int getCaptured(int ply, int i) {
+        return captures[ply][i];
+    }
+
+    public int[] getScores(int ply) {
+        return scores[ply];
+    }
+
+    // moves the remaining move with the highest score to position i and returns it,
+    // so the moves are sorted only as far as the search gets before a cutoff
+    public int pick(int ply, int i) {
+        int[] m = moves[ply];
+        int[] s = scores[ply];
+        int best = i;
+        for (int j = i + 1; j < counts[ply]; j++) {
+            if (s[j] > s[best]) {
+                best = j;
+            }
+        }
+        if (best != i) {
+            int t = m[i];
+            m[i] = m[best];
+            m[best] = t;
+            t = s[i];
+            s[i] = s[best];
+            s[best] = t;
+            int[] c = captures[ply];
+            t = c[i];
+            c[i] = c[best];
+            c[best] = t;
+        }
+        return m[i];
+    }
+}
@@ -0,0 +1,120 @@
+package com.zimnicky.draughts;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+// Opening book made by OpeningBookBuilder, read from a memory-mapped file.
+// The file is a header (magic, entry count) and entries of the position hash (long),
+// the packed move and its weight (ints), sorted by hash, so a position is found by binary search.
+public class OpeningBook {
+
+    static final int MAGIC = 0x444F4231;    // "DOB1"
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 16;
+
+    private final ByteBuffer data;
+    private final int count;
+
+    OpeningBook(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not an opening book");
+        }
+        count = data.getInt(4);
+        if (count < 0 || data.limit() < HEADER_SIZE + (long) count * ENTRY_SIZE) {
+            throw new IOException("Broken opening book");
+        }
+    }
+
+    // maps the file read-only, the mapping stays valid after the file is closed
+    public static OpeningBook open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close();
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    private long hash(int i) {
+        return data.getLong(HEADER_SIZE + i * ENTRY_SIZE);
+    }
+
+    private int move(int i) {
+        return data.getInt(HEADER_SIZE + i * ENTRY_SIZE + 8);
+    }
+
+    private int weight(int i) {
+        return data.getInt(HEADER_SIZE + i * ENTRY_SIZE + 12);
+    }
+
+    // first entry of the position, count if there is none
+    private int find(long hash) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hash(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // A book move of the position chosen at random by the weights, or the heaviest one if random is null.
+    // Returns PackedMove.NONE if the position isn't in the book. Moves which aren't legal
+    // in the position (a hash collision) are skipped.
+    public int choose(Board board, Random random) {
+        long hash = board.getHash();
+        int first = find(hash);
+        int[] legal = new int[MoveStack.MAX_MOVES];
+        int legalCount = MoveGenerator.generate(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                board.isWhiteTurn(), board.getContinuation(), legal);
+
+        long total = 0;
+        int best = PackedMove.NONE;
+        int bestWeight = 0;
+        for (int i = first; i < count && hash(i) == hash; i++) {
+            if (isLegal(move(i), legal, legalCount) && weight(i) > 0) {
+                total += weight(i);
+                if (weight(i) > bestWeight) {
+                    best = move(i);
+                    bestWeight = weight(i);
+                }
+            }
+        }
+        if (random == null || total == 0) {
+            return best;
+        }
+        long r = (long) (random.nextDouble() * total);
+        for (int i = first; i < count && hash(i) == hash; i++) {
+            if (isLegal(move(i), legal, legalCount) && weight(i) > 0) {
+                r -= weight(i);
+                if (r < 0) {
+                    return move(i);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean isLegal(int move, int[] legal, int count) {
+        for (int i = 0; i < count; i++) {
+            if (legal[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
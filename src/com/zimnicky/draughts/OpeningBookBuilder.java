@@ -0,0 +1,118 @@
+package com.zimnicky.draughts;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+
+// Builds the opening book by deep searches of every move of the book positions.
+// The moves rated at most margin below the best one are kept, with weight margin + 1 less
+// the difference, and the positions after them are expanded until the given number of plies.
+// usage: OpeningBookBuilder file [plies] [depth] [margin]
+public class OpeningBookBuilder {
+
+    private static final int TABLE_SIZE = 64;   // MB
+
+    private final byte depth;
+    private final int margin;
+    private final ABAIPlayer player;
+    private final HashSet<Long> expanded = new HashSet<>();
+    private final ArrayList<long[]> entries = new ArrayList<>();   // hash, move, weight
+
+    public OpeningBookBuilder(byte depth, int margin) {
+        this.depth = depth;
+        this.margin = margin;
+        player = new ABAIPlayer(depth, TABLE_SIZE);
+    }
+
+    public int getCount() {
+        return entries.size();
+    }
+
+    // hash, move, weight of every entry
+    ArrayList<long[]> getEntries() {
+        return entries;
+    }
+
+    // adds the book moves of the position and of the positions after them
+    public void build(Board position, int plies) {
+        if (plies <= 0 || !expanded.add(position.getHash())) {
+            return;
+        }
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int count = MoveGenerator.generate(position.getWhiteCells(), position.getBlackCells(), position.getQueens(),
+                position.isWhiteTurn(), position.getContinuation(), moves);
+        if (count == 0) {
+            return;
+        }
+        int[] ratings = new int[count];
+        int best = -ABAIPlayer.INFINITY;
+        if (count > 1) {
+            for (int i = 0; i < count; i++) {
+                Board next = new Board(position);
+                next.makeMove(moves[i]);
+                int rating = player.evaluate(next, (byte) (depth - 1));
+                ratings[i] = (next.isWhiteTurn() == position.isWhiteTurn()) ? rating : -rating;
+                best = Math.max(best, ratings[i]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (count > 1 && ratings[i] < best - margin) {
+                continue;
+            }
+            int weight = (count == 1) ? 1 : margin + 1 - (best - ratings[i]);
+            entries.add(new long[]{position.getHash(), moves[i], weight});
+            Board next = new Board(position);
+            next.makeMove(moves[i]);
+            build(next, plies - 1);
+        }
+    }
+
+    public void write(File file) throws IOException {
+        Collections.sort(entries, new Comparator<long[]>() {
+            public int compare(long[] a, long[] b) {
+                if (a[0] != b[0]) {
+                    return a[0] < b[0] ? -1 : 1;
+                }
+                return a[2] > b[2] ? -1 : (a[2] < b[2] ? 1 : 0);
+            }
+        });
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(OpeningBook.MAGIC);
+            output.writeInt(entries.size());
+            for (long[] entry : entries) {
+                output.writeLong(entry[0]);
+                output.writeInt((int) entry[1]);
+                output.writeInt((int) entry[2]);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: OpeningBookBuilder file [plies] [depth] [margin]");
+            return;
+        }
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        byte depth = args.length > 2 ? Byte.parseByte(args[2]) : 10;
+        int margin = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        if (depth < 1) {
+            System.out.println("depth has to be 1 or more");
+            return;
+        }
+
+        long start = System.nanoTime();
+        OpeningBookBuilder builder = new OpeningBookBuilder(depth, margin);
+        builder.build(new Board(), plies);
+        builder.write(new File(args[0]));
+        System.out.printf("%d moves, %d s%n", builder.getCount(), (System.nanoTime() - start) / 1000000000L);
+    }
+}
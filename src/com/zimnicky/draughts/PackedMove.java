@@ -0,0 +1,73 @@
+package com.zimnicky.draughts;
+
+// Move packed into an int, used by the engine instead of Game.Move:
+//  bits 0-4   start square (row*4 + col/2)
+//  bits 5-9   destination square
+//  bits 10-14 square of the beaten piece
+//  bit  15    beat
+//  bit  16    promotion to queen
+// A whole beat sequence (MoveGenerator.generateSequences) is packed the same way: its start, its
+// last square and the first beaten piece; the mask of all beaten pieces is kept beside the move.
+public final class PackedMove {
+
+    public static final int NONE = 0;  // a1-a1 is never a legal move
+
+    static final int CAPTURE = 1 << 15;
+    static final int PROMOTION = 1 << 16;
+
+    private PackedMove() {}
+
+    public static int quiet(int from, int to, boolean promotion) {
+        return from | (to << 5) | (promotion ? PROMOTION : 0);
+    }
+
+    public static int capture(int from, int to, int captured, boolean promotion) {
+        return from | (to << 5) | (captured << 10) | CAPTURE | (promotion ? PROMOTION : 0);
+    }
+
+    public static int from(int move) {
+        return move & 31;
+    }
+
+    public static int to(int move) {
+        return (move >>> 5) & 31;
+    }
+
+    public static int captured(int move) {
+        return (move >>> 10) & 31;
+    }
+
+    public static int capturedMask(int move) {
+        if ((move & CAPTURE) == 0) {
+            return 0;
+        }
+        return 1 << captured(move);
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION) != 0;
+    }
+
+    public static Game.Move toMove(int move) {
+        int from = from(move);
+        int to = to(move);
+        return new Game.Move(MoveGenerator.row(from), MoveGenerator.col(from), MoveGenerator.row(to), MoveGenerator.col(to),
+                isCapture(move) ? Game.MoveResult.BEAT : Game.MoveResult.MOVED);
+    }
+
+    public static boolean matches(int move, Game.Move other) {
+        int from = from(move);
+        int to = to(move);
+        return other != null
+                && MoveGenerator.row(from) == other.getStartRow() && MoveGenerator.col(from) == other.getStartCol()
+                && MoveGenerator.row(to) == other.getDistRow() && MoveGenerator.col(to) == other.getDistCol();
+    }
+
+    public static String toString(int move) {
+        return toMove(move).toString();
+    }
+}
@@ -0,0 +1,329 @@
+package com.zimnicky.draughts;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+
+// Reads games written in PDN one by one. Squares may be named a1-h8 or numbered 1-32 as in
+// Board.fromFen, moves may be written with '-', 'x' or ':'; a beat sequence given by its start
+// and last squares only has to be the only one between them, of the ways it can go the first is taken. Comments, variations and NAGs are skipped.
+public class PdnReader implements Closeable {
+
+    private static final int EOF = -1;
+
+    private final Reader input;
+    private int next = EOF;         // character read ahead
+    private boolean hasNext;
+    private int line = 1;
+
+    private final int[] moves = new int[MoveStack.MAX_MOVES];
+    private final int[] captures = new int[MoveStack.MAX_MOVES];
+    private final long[] paths = new long[MoveStack.MAX_MOVES];
+    private final int[] squares = new int[MoveGenerator.SQUARES + 1];
+
+    public PdnReader(Reader input) {
+        this.input = (input instanceof BufferedReader) ? input : new BufferedReader(input);
+    }
+
+    private int peek() throws IOException {
+        if (!hasNext) {
+            next = input.read();
+            hasNext = true;
+        }
+        return next;
+    }
+
+    private int readChar() throws IOException {
+        int c = peek();
+        hasNext = false;
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at line " + line);
+    }
+
+    private void skipSpaces() throws IOException {
+        while (peek() != EOF && Character.isWhitespace(peek())) {
+            readChar();
+        }
+    }
+
+    // the next game, null at the end of the input
+    public GameRecord read() throws IOException {
+        skipSpaces();
+        while (peek() == '{' || peek() == ';' || peek() == '%') {
+            skipComment();
+            skipSpaces();
+        }
+        if (peek() == EOF) {
+            return null;
+        }
+
+        GameRecord record;
+        String fen = null;
+        LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+        while (peek() == '[') {
+            readChar();
+            String name = tagName();
+            String value = tagValue();
+            if (name.equals("FEN")) {
+                fen = value;
+            } else if (!name.equals("GameType") && !name.equals("Result")) {
+                tags.put(name, value);
+            }
+            skipSpaces();
+        }
+        try {
+            record = (fen == null) ? new GameRecord() : new GameRecord(fromFen(fen));
+        } catch (IllegalArgumentException e) {
+            throw error("Wrong FEN \"" + fen + "\"");
+        }
+        record.getTags().putAll(tags);
+
+        while (true) {
+            skipSpaces();
+            int c = peek();
+            if (c == EOF || c == '[') {
+                return record;     // no result
+            }
+            if (c == '{' || c == ';' || c == '%') {
+                skipComment();
+            } else if (c == '(') {
+                skipVariation();
+            } else {
+                String word = word();
+                if (word.startsWith("$")) {
+                    continue;       // NAG
+                }
+                int winner = winner(word);
+                if (winner != -2) {
+                    record.setWinner(winner);
+                    return record;
+                }
+                move(record, word);
+            }
+        }
+    }
+
+    private void skipComment() throws IOException {
+        int c = readChar();
+        if (c == '{') {
+            while (c != '}') {
+                c = readChar();
+                if (c == EOF) {
+                    throw error("Comment is not closed");
+                }
+            }
+        } else {
+            while (c != '\n' && c != EOF) {
+                c = readChar();
+            }
+        }
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        do {
+            int c = peek();
+            if (c == EOF) {
+                throw error("Variation is not closed");
+            }
+            if (c == '{' || c == ';') {
+                skipComment();
+                continue;
+            }
+            readChar();
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private String tagName() throws IOException {
+        skipSpaces();
+        StringBuilder name = new StringBuilder();
+        while (peek() != EOF && !Character.isWhitespace(peek()) && peek() != '"' && peek() != ']') {
+            name.append((char) readChar());
+        }
+        if (name.length() == 0) {
+            throw error("Wrong tag");
+        }
+        return name.toString();
+    }
+
+    private String tagValue() throws IOException {
+        skipSpaces();
+        if (readChar() != '"') {
+            throw error("Wrong tag");
+        }
+        StringBuilder value = new StringBuilder();
+        for (int c = readChar(); c != '"'; c = readChar()) {
+            if (c == '\\') {
+                c = readChar();
+            }
+            if (c == EOF) {
+                throw error("Wrong tag");
+            }
+            value.append((char) c);
+        }
+        skipSpaces();
+        if (readChar() != ']') {
+            throw error("Wrong tag");
+        }
+        return value.toString();
+    }
+
+    private String word() throws IOException {
+        StringBuilder word = new StringBuilder();
+        int c = peek();
+        while (c != EOF && !Character.isWhitespace(c) && c != '{' && c != '}' && c != '(' && c != ')'
+                && c != ';' && c != '[' && c != ']') {
+            word.append((char) readChar());
+            c = peek();
+        }
+        if (word.length() == 0) {
+            throw error("Unexpected '" + (char) readChar() + "'");
+        }
+        return word.toString();
+    }
+
+    // -2 if the word is not a result
+    private static int winner(String word) {
+        if (word.equals("1-0") || word.equals("2-0")) {
+            return 0;
+        }
+        if (word.equals("0-1") || word.equals("0-2")) {
+            return 1;
+        }
+        if (word.equals("1/2-1/2") || word.equals("1-1")) {
+            return Game.DRAW;
+        }
+        if (word.equals("*")) {
+            return -1;
+        }
+        return -2;
+    }
+
+    // the FEN tag with numbered or named squares
+    static Board fromFen(String fen) {
+        StringBuilder numbered = new StringBuilder(fen.length());
+        for (int i = 0; i < fen.length(); i++) {
+            char c = fen.charAt(i);
+            if (c >= 'a' && c <= 'h' && i + 1 < fen.length()) {
+                int square = square(fen.substring(i, i + 2));
+                if (square < 0) {
+                    throw new IllegalArgumentException("Wrong FEN: " + fen);
+                }
+                numbered.append(square + 1);
+                i++;
+            } else {
+                numbered.append(c);
+            }
+        }
+        return Board.fromFen(numbered.toString());
+    }
+
+    // square named "c3" or numbered "1"-"32", -1 if it is neither
+    static int square(String name) {
+        if (name.length() == 2 && name.charAt(0) >= 'a' && name.charAt(0) <= 'h'
+                && name.charAt(1) >= '1' && name.charAt(1) <= '8') {
+            int row = '8' - name.charAt(1);
+            int col = name.charAt(0) - 'a';
+            return ((row + col) & 1) == 1 ? MoveGenerator.square(row, col) : -1;
+        }
+        int number = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9' || i > 1) {
+                return -1;
+            }
+            number = number * 10 + c - '0';
+        }
+        return (number >= 1 && number <= MoveGenerator.SQUARES) ? number - 1 : -1;
+    }
+
+    private void move(GameRecord record, String word) throws IOException {
+        // move number, "12." or "12..." may stick to the move
+        int start = 0;
+        while (start < word.length() && Character.isDigit(word.charAt(start))) {
+            start++;
+        }
+        if (start < word.length() && word.charAt(start) == '.') {
+            while (start < word.length() && word.charAt(start) == '.') {
+                start++;
+            }
+        } else {
+            start = 0;
+        }
+        int end = word.length();
+        while (end > start && (word.charAt(end - 1) == '!' || word.charAt(end - 1) == '?'
+                || word.charAt(end - 1) == '*' || word.charAt(end - 1) == '+')) {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+
+        int count = 0;
+        int from = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || word.charAt(i) == '-' || word.charAt(i) == 'x' || word.charAt(i) == ':') {
+                int square = square(word.substring(from, i));
+                if (square < 0 || count == squares.length) {
+                    throw error("Wrong move \"" + word + "\"");
+                }
+                squares[count++] = square;
+                from = i + 1;
+            }
+        }
+        if (count < 2) {
+            throw error("Wrong move \"" + word + "\"");
+        }
+
+        Board board = record.position();
+        int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                board.isWhiteTurn(), board.getContinuation(), moves, captures, paths);
+        // the written squares are the path, or with two squares the start and the end of a sequence
+        long path = 0;
+        for (int i = 1; i < count; i++) {
+            path |= (long) squares[i] << (MoveGenerator.PATH_BITS * (i - 1));
+        }
+        int found = -1;
+        for (int i = 0; i < n && found < 0; i++) {
+            if (PackedMove.from(moves[i]) == squares[0] && PackedMove.isCapture(moves[i])
+                    && Integer.bitCount(captures[i]) == count - 1 && paths[i] == path) {
+                found = i;
+            }
+        }
+        if (found < 0 && count == 2) {
+            for (int i = 0; i < n; i++) {
+                if (PackedMove.from(moves[i]) != squares[0] || PackedMove.to(moves[i]) != squares[1]) {
+                    continue;
+                }
+                // paths beating the same pieces between the same squares are the same turn
+                if (found >= 0 && (moves[i] != moves[found] || captures[i] != captures[found])) {
+                    throw error("Ambiguous move \"" + word + "\"");
+                }
+                if (found < 0) {
+                    found = i;
+                }
+            }
+        }
+        if (found < 0) {
+            throw error("Illegal move \"" + word + "\"");
+        }
+        record.addTurn(moves[found], captures[found], paths[found]);
+    }
+
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,116 @@
+package com.zimnicky.draughts;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+// Writes games in PDN of Russian draughts (GameType 25): squares are named a1-h8 from white's side,
+// a quiet move is "c3-d4", a beat sequence lists all its squares as it was played, "c3:e5:c7".
+// The FEN tag names the squares the same way, "W:Wc3,Kd4:Bf6".
+// A beat sequence which isn't over at the end of the record is not written.
+public class PdnWriter implements Closeable {
+
+    static final String GAME_TYPE = "25";
+    private static final int LINE_LENGTH = 80;
+
+    private final Writer output;
+    private final StringBuilder line = new StringBuilder();
+
+    public PdnWriter(Writer output) {
+        this.output = (output instanceof BufferedWriter) ? output : new BufferedWriter(output);
+    }
+
+    // "a1" is row 7, column 0
+    static String square(int square) {
+        return "" + (char) ('a' + MoveGenerator.col(square)) + (char) ('8' - MoveGenerator.row(square));
+    }
+
+    static String result(int winner) {
+        switch (winner) {
+            case 0:
+                return "1-0";
+            case 1:
+                return "0-1";
+            case Game.DRAW:
+                return "1/2-1/2";
+            default:
+                return "*";
+        }
+    }
+
+    public void write(GameRecord record) throws IOException {
+        String result = result(record.getWinner());
+        for (Map.Entry<String, String> tag : record.getTags().entrySet()) {
+            String name = tag.getKey();
+            if (!name.equals("GameType") && !name.equals("FEN") && !name.equals("Result")) {
+                writeTag(name, tag.getValue());
+            }
+        }
+        writeTag("GameType", GAME_TYPE);
+        Board board = record.getStart();
+        if (!record.isStandardStart()) {
+            writeTag("FEN", board.toFen(true));
+        }
+        writeTag("Result", result);
+        output.write('\n');
+
+        int number = 1;
+        for (int i = 0; i < record.getTurnCount(); i++) {
+            int move = record.getTurn(i);
+            int captured = record.getCaptured(i);
+            if (board.isWhiteTurn()) {
+                word(number + ".");
+            } else if (i == 0) {
+                word(number + "...");
+            }
+            StringBuilder text = new StringBuilder(square(PackedMove.from(move)));
+            if (PackedMove.isCapture(move)) {
+                long path = record.getPath(i);
+                for (int j = 0; j < Integer.bitCount(captured); j++) {
+                    text.append(':').append(square(MoveGenerator.pathSquare(path, j)));
+                }
+            } else {
+                text.append('-').append(square(PackedMove.to(move)));
+            }
+            word(text.toString());
+            if (!board.isWhiteTurn()) {
+                number++;
+            }
+            board.makeSequence(move, captured);
+        }
+        word(result);
+        output.write(line.toString());
+        output.write("\n\n");
+        line.setLength(0);
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        output.write('[');
+        output.write(name);
+        output.write(" \"");
+        output.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+        output.write("\"]\n");
+    }
+
+    private void word(String word) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + word.length() > LINE_LENGTH) {
+            output.write(line.toString());
+            output.write('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(word);
+    }
+
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    public void close() throws IOException {
+        output.close();
+    }
+}
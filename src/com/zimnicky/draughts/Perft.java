@@ -0,0 +1,194 @@
+package com.zimnicky.draughts;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Counts the leaves of the move tree to a fixed depth. Every hop of a multiple
+// beat is a ply of the same player, as it is in Game.run; with -sequences a whole
+// beat sequence is one ply, as it is in the search.
+// usage: Perft depth [-fen "W:W21-32:B1-12"] [-divide] [-threads n] [-sequences] [-verify]
+public class Perft {
+
+    private final MoveStack moveStack;
+    private final boolean sequences;
+
+    public Perft(int maxDepth) {
+        this(maxDepth, false);
+    }
+
+    public Perft(int maxDepth, boolean sequences) {
+        moveStack = new MoveStack(maxDepth + 1);
+        this.sequences = sequences;
+    }
+
+    public long count(SearchBoard board, int depth) {
+        return count(board, depth, 0);
+    }
+
+    private long count(SearchBoard board, int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        int n = sequences ? moveStack.generateSequences(ply, board, board.isWhiteTurn(), board.getContinuation())
+                : moveStack.generate(ply, board, board.isWhiteTurn(), board.getContinuation());
+        if (depth == 1) {
+            return n;
+        }
+        int[] moves = moveStack.getMoves(ply);
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            if (sequences) {
+                board.make(moves[i], moveStack.getCaptured(ply, i));
+            } else {
+                board.make(moves[i]);
+            }
+            nodes += count(board, depth - 1, ply + 1);
+            board.undo();
+        }
+        return nodes;
+    }
+
+    // leaves under every move of the position, the subtrees are counted by the given number of threads
+    public static long[] divide(final Board position, final int depth, int threads, int[] moves,
+                                final boolean sequences) throws InterruptedException, ExecutionException {
+        final int[] captures = new int[MoveStack.MAX_MOVES];
+        final int n = sequences
+                ? MoveGenerator.generateSequences(position.getWhiteCells(), position.getBlackCells(),
+                        position.getQueens(), position.isWhiteTurn(), position.getContinuation(), moves, captures)
+                : MoveGenerator.generate(position.getWhiteCells(), position.getBlackCells(), position.getQueens(),
+                        position.isWhiteTurn(), position.getContinuation(), moves);
+        long[] counts = new long[n];
+        if (depth == 0) {
+            return counts;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        try {
+            ArrayList<Future<Long>> results = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                final int move = moves[i];
+                final int captured = captures[i];
+                results.add(executor.submit(new Callable<Long>() {
+                    public Long call() {
+                        SearchBoard board = new SearchBoard(position, depth + 1);
+                        if (sequences) {
+                            board.make(move, captured);
+                        } else {
+                            board.make(move);
+                        }
+                        return new Perft(depth, sequences).count(board, depth - 1);
+                    }
+                }));
+            }
+            for (int i = 0; i < n; i++) {
+                counts[i] = results.get(i).get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return counts;
+    }
+
+    // the same count by the rules of Game.canMove, which checks a move without MoveGenerator, to check
+    // the generator against it; with sequences the hops after the first one of a multiple beat are not
+    // counted as plies
+    public static long countWithGame(Game rules, Board board, Player.Color color, Game.Move lastMove, int depth,
+                                     boolean sequences) {
+        if (depth == 0) {
+            return 1;
+        }
+        ArrayList<Game.Move> moves = movesByRules(rules, board, color, lastMove);
+        long nodes = 0;
+        for (Game.Move move : moves) {
+            Board next = new Board(board);
+            rules.makeMove(next, move);
+            if (move.getResult() == Game.MoveResult.BEAT && rules.canBeat(move.getDistRow(), move.getDistCol(), next)) {
+                nodes += countWithGame(rules, next, color, move, sequences ? depth : depth - 1, sequences);
+            } else {
+                Player.Color opponent = (color == Player.Color.WHITE) ? Player.Color.BLACK : Player.Color.WHITE;
+                nodes += countWithGame(rules, next, opponent, null, depth - 1, sequences);
+            }
+        }
+        return nodes;
+    }
+
+    // every pair of cells Game.canMove allows for the pieces of the color; canMove checks the beats
+    // of the moved piece only, the beats of any other piece are compulsory too
+    static ArrayList<Game.Move> movesByRules(Game rules, Board board, Player.Color color, Game.Move lastMove) {
+        ArrayList<Game.Move> moves = new ArrayList<>();
+        ArrayList<Game.Move> beats = new ArrayList<>();
+        int size = board.getSize();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (!board.getCell(i, j).sameColor(color)) {
+                    continue;
+                }
+                for (int k = 0; k < size; k++) {
+                    for (int l = 0; l < size; l++) {
+                        Game.Move move = new Game.Move(i, j, k, l);
+                        if (rules.canMove(move, lastMove, board)) {
+                            (move.getResult() == Game.MoveResult.BEAT ? beats : moves).add(move);
+                        }
+                    }
+                }
+            }
+        }
+        return beats.isEmpty() ? moves : beats;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: Perft depth [-fen \"W:W21-32:B1-12\"] [-divide] [-threads n] [-sequences] [-verify]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        Board position = new Board();
+        boolean divide = false;
+        boolean verify = false;
+        boolean sequences = false;
+        int threads = 1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-fen") && i + 1 < args.length) {
+                position = Board.fromFen(args[++i]);
+            } else if (args[i].equals("-divide")) {
+                divide = true;
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-sequences")) {
+                sequences = true;
+            } else if (args[i].equals("-verify")) {
+                verify = true;
+            }
+        }
+
+        System.out.println(position.toFen());
+        long start = System.nanoTime();
+        long nodes = 0;
+        if (divide || threads > 1) {
+            int[] moves = new int[MoveStack.MAX_MOVES];
+            long[] counts = divide(position, depth, threads, moves, sequences);
+            for (int i = 0; i < counts.length; i++) {
+                if (divide) {
+                    System.out.println(PackedMove.toString(moves[i]) + ": " + counts[i]);
+                }
+                nodes += counts[i];
+            }
+            if (depth == 0) {
+                nodes = 1;
+            }
+        } else {
+            nodes = new Perft(depth, sequences).count(new SearchBoard(position, depth + 1), depth);
+        }
+        long time = System.nanoTime() - start;
+        System.out.printf("perft(%d) = %d, %d ms, %.0f nodes/s%n", depth, nodes, time / 1000000,
+                nodes * 1e9 / Math.max(time, 1));
+
+        if (verify) {
+            long expected = countWithGame(new Game(), position, position.getTurn(), null, depth, sequences);
+            System.out.println(expected == nodes ? "verified" : "MISMATCH: Game counts " + expected);
+        }
+    }
+}
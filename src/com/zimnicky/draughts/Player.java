@@ -4,6 +4,11 @@ public abstract class Player {
     public enum Color {BLACK, WHITE};
     protected Color color;
 
+    // receives the move of a player, null if the player gives up
+    public interface MoveCallback {
+        void moveMade(Game.Move move);
+    }
+
     public Color getColor() {
         return color;
     }
@@ -13,4 +18,10 @@ public abstract class Player {
     }
 
     abstract public Game.Move makeMove(Game game, Game.Move lastMove);
+
+    // Asks for a move without blocking the caller. The callback may be called later from any thread.
+    // By default the move is computed at once by makeMove.
+    public void requestMove(Game game, Game.Move lastMove, MoveCallback callback) {
+        callback.moveMade(makeMove(game, lastMove));
+    }
 }
@@ -0,0 +1,42 @@
+package com.zimnicky.draughts;
+
+// Board for the engine: owned by a single search thread, moves are made and
+// taken back in place with an undo stack.
+public class SearchBoard extends Board {
+
+    private static final int HOP = -1;  // in capturedStack: the move was a single hop
+
+    private final long[] undoStack;
+    private final int[] capturedStack;
+    private int undoCount;
+
+    public SearchBoard(Board board, int maxPly) {
+        super(board);
+        undoStack = new long[maxPly];
+        capturedStack = new int[maxPly];
+    }
+
+    public void make(int move) {
+        capturedStack[undoCount] = HOP;
+        undoStack[undoCount++] = makeMove(move);
+    }
+
+    // a move made by MoveGenerator.generateSequences with the mask of its beaten pieces
+    public void make(int move, int captured) {
+        capturedStack[undoCount] = captured;
+        undoStack[undoCount++] = makeSequence(move, captured);
+    }
+
+    public void undo() {
+        undoCount--;
+        if (capturedStack[undoCount] == HOP) {
+            undoMove((int) undoStack[undoCount]);
+        } else {
+            undoSequence(undoStack[undoCount], capturedStack[undoCount]);
+        }
+    }
+
+    public int getPly() {
+        return undoCount;
+    }
+}
@@ -0,0 +1,60 @@
+package com.zimnicky.draughts;
+
+// Command line tool: time to a fixed depth of the parallel search compared with one thread.
+// usage: SearchSpeedup [threads] [depth]
+public class SearchSpeedup {
+
+    private static final int TABLE_SIZE = 64;   // MB
+
+    // start position and positions of a self-play game after some moves
+    private static Board[] positions() {
+        Board[] positions = new Board[4];
+        ABAIPlayer player = new ABAIPlayer((byte) 4, TABLE_SIZE);
+        Board board = new Board();
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new Board(board);
+            for (int ply = 0; ply < 8; ply++) {
+                int move = player.think(board);
+                if (move == PackedMove.NONE) {
+                    return positions;
+                }
+                board.makeSequence(move, player.resultCaptured);
+            }
+        }
+        return positions;
+    }
+
+    private static long[] run(Board[] positions, int threads, byte depth) {
+        long time = 0;
+        long nodes = 0;
+        for (Board position : positions) {
+            if (position == null) {
+                continue;
+            }
+            ABAIPlayer player = new ABAIPlayer(depth, TABLE_SIZE);
+            player.setThreads(threads);
+            long start = System.nanoTime();
+            player.think(position);
+            time += System.nanoTime() - start;
+            nodes += player.getNodes();
+        }
+        return new long[]{time, nodes};
+    }
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        byte depth = args.length > 1 ? Byte.parseByte(args[1]) : 10;
+
+        Board[] positions = positions();
+        run(positions, threads, (byte) Math.min(depth, 6));    // warm up
+
+        long[] single = run(positions, 1, depth);
+        long[] parallel = run(positions, threads, depth);
+
+        System.out.printf("depth %d, %d positions%n", depth, positions.length);
+        System.out.printf("1 thread:   %8d ms %12d nodes%n", single[0] / 1000000, single[1]);
+        System.out.printf("%d threads: %8d ms %12d nodes%n", threads, parallel[0] / 1000000, parallel[1]);
+        System.out.printf("speedup %.2f, nodes per second x%.2f%n", (double) single[0] / parallel[0],
+                ((double) parallel[1] / parallel[0]) / ((double) single[1] / single[0]));
+    }
+}
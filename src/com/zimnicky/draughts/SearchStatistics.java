@@ -0,0 +1,156 @@
+package com.zimnicky.draughts;
+
+import java.util.ArrayList;
+
+// What a search of one move did. Counters are summed over all search threads.
+public class SearchStatistics {
+
+    long nodes;
+    long quiescenceNodes;       // nodes below the nominal depth (beat sequences)
+    long cutoffs;
+    long firstMoveCutoffs;      // cutoffs by the first move searched
+    long tableProbes;
+    long tableHits;
+    long tablebaseHits;
+    long reduced;               // moves searched with a reduced depth first
+    long pruned;                // moves and nodes cut by futility and razoring
+    int depth;                  // deepest complete iteration
+    int score;                  // rating of the best move for the side to move, of that iteration
+    int[] pv = new int[0];      // principal variation of that iteration, packed moves (beat sequences)
+    long time;                  // ns
+
+    public SearchStatistics() {}
+
+    public SearchStatistics(SearchStatistics other) {
+        set(other);
+    }
+
+    void clear() {
+        nodes = 0;
+        quiescenceNodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        tablebaseHits = 0;
+        reduced = 0;
+        pruned = 0;
+        depth = 0;
+        score = 0;
+        pv = new int[0];
+        time = 0;
+    }
+
+    void set(SearchStatistics other) {
+        nodes = other.nodes;
+        quiescenceNodes = other.quiescenceNodes;
+        cutoffs = other.cutoffs;
+        firstMoveCutoffs = other.firstMoveCutoffs;
+        tableProbes = other.tableProbes;
+        tableHits = other.tableHits;
+        tablebaseHits = other.tablebaseHits;
+        reduced = other.reduced;
+        pruned = other.pruned;
+        depth = other.depth;
+        score = other.score;
+        pv = other.pv;
+        time = other.time;
+    }
+
+    // adds the counters of a helper thread
+    void add(SearchStatistics other) {
+        nodes += other.nodes;
+        quiescenceNodes += other.quiescenceNodes;
+        cutoffs += other.cutoffs;
+        firstMoveCutoffs += other.firstMoveCutoffs;
+        tableProbes += other.tableProbes;
+        tableHits += other.tableHits;
+        tablebaseHits += other.tablebaseHits;
+        reduced += other.reduced;
+        pruned += other.pruned;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    public long getTableProbes() {
+        return tableProbes;
+    }
+
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    public long getTablebaseHits() {
+        return tablebaseHits;
+    }
+
+    public long getReduced() {
+        return reduced;
+    }
+
+    public long getPruned() {
+        return pruned;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    // the moves the engine expects from its best move on, a beat sequence is one move from its start to its end
+    public ArrayList<Game.Move> getPrincipalVariation() {
+        ArrayList<Game.Move> moves = new ArrayList<>(pv.length);
+        for (int move : pv) {
+            moves.add(PackedMove.toMove(move));
+        }
+        return moves;
+    }
+
+    public long getTimeMillis() {
+        return time / 1000000;
+    }
+
+    public long getNodesPerSecond() {
+        if (time <= 0) {
+            return 0;
+        }
+        return (long) (nodes * 1e9 / time);
+    }
+
+    // share of cutoffs made by the first move, 1 is perfect ordering
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    public double getTableHitRate() {
+        return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+    }
+
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        for (int move : pv) {
+            line.append(' ').append(PackedMove.toString(move));
+        }
+        return String.format("depth %d, score %d, %d nodes (%d quiescence), %d ms, %d nodes/s, cutoffs %d (%.1f%% first), "
+                        + "table hits %d/%d, tablebase hits %d, reduced %d, pruned %d, pv%s",
+                depth, score, nodes, quiescenceNodes, getTimeMillis(), getNodesPerSecond(), cutoffs,
+                100 * getFirstMoveCutoffRate(), tableHits, tableProbes, tablebaseHits, reduced, pruned, line);
+    }
+}
@@ -0,0 +1,226 @@
+package com.zimnicky.draughts;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Endgame tablebase made by TablebaseGenerator, read from a memory-mapped file.
+// There is a table for every material (white men, white queens, black men, black queens)
+// with at most getMaxPieces() pieces, one byte per position without a beat sequence:
+// 0 -- draw, otherwise the distance to the end of the game in turns + 1. The side to move
+// wins if the distance is odd and loses if it is even. A beat sequence is one turn.
+public class Tablebase {
+
+    public static final int NOT_FOUND = -1;
+    public static final int DRAW = 0;
+
+    static final int MAGIC = 0x44544231;    // "DTB1"
+    static final int SIDE_LIMIT = 13;       // pieces of one kind are counted in base 13
+
+    // header: magic, max pieces, class count, then for every class
+    // white men, white queens, black men, black queens (bytes), size, offset of the table (ints)
+    static final int HEADER_SIZE = 12;
+    static final int CLASS_ENTRY_SIZE = 12;
+
+    static final int[][] BINOMIAL = new int[MoveGenerator.SQUARES + 1][MoveGenerator.SQUARES + 1];
+
+    static {
+        for (int n = 0; n <= MoveGenerator.SQUARES; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int maxPieces;
+    private final int[] offsets = new int[SIDE_LIMIT * SIDE_LIMIT * SIDE_LIMIT * SIDE_LIMIT];  // -1 if there is no table
+
+    Tablebase(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a tablebase");
+        }
+        maxPieces = data.getInt(4);
+        int classes = data.getInt(8);
+        if (maxPieces < 2 || maxPieces >= SIDE_LIMIT || data.limit() < HEADER_SIZE + classes * CLASS_ENTRY_SIZE) {
+            throw new IOException("Broken tablebase header");
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = -1;
+        }
+        for (int i = 0; i < classes; i++) {
+            int entry = HEADER_SIZE + i * CLASS_ENTRY_SIZE;
+            int key = classKey(data.get(entry), data.get(entry + 1), data.get(entry + 2), data.get(entry + 3));
+            int size = data.getInt(entry + 4);
+            int offset = data.getInt(entry + 8);
+            if (offset < 0 || size < 0 || (long) offset + size > data.limit()) {
+                throw new IOException("Broken tablebase header");
+            }
+            offsets[key] = offset;
+        }
+    }
+
+    // maps the file read-only, the mapping stays valid after the file is closed
+    public static Tablebase open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close();
+        }
+    }
+
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    // value of the position for the side to move, NOT_FOUND if it isn't in the tablebase
+    public int probe(Board board) {
+        if (board.getContinuation() >= 0) {
+            return NOT_FOUND;
+        }
+        return probe(board.getWhiteCells(), board.getBlackCells(), board.getQueens(), board.isWhiteTurn());
+    }
+
+    int probe(int white, int black, int queens, boolean whiteTurn) {
+        if (Integer.bitCount(white | black) > maxPieces) {
+            return NOT_FOUND;
+        }
+        if ((whiteTurn ? white : black) == 0) {
+            return 1;   // lost, no pieces
+        }
+        if ((whiteTurn ? black : white) == 0) {
+            return NOT_FOUND;
+        }
+        int offset = offsets[classKey(white, black, queens)];
+        if (offset < 0) {
+            return NOT_FOUND;
+        }
+        return data.get(offset + index(white, black, queens, whiteTurn)) & 0xFF;
+    }
+
+    public static boolean isWin(int value) {
+        return value > 0 && (value & 1) == 0;
+    }
+
+    public static boolean isLoss(int value) {
+        return value > 0 && (value & 1) == 1;
+    }
+
+    // turns to the end of the game
+    public static int getDistance(int value) {
+        return value - 1;
+    }
+
+    static int classKey(int whiteMen, int whiteQueens, int blackMen, int blackQueens) {
+        return ((whiteMen * SIDE_LIMIT + whiteQueens) * SIDE_LIMIT + blackMen) * SIDE_LIMIT + blackQueens;
+    }
+
+    static int classKey(int white, int black, int queens) {
+        return classKey(Integer.bitCount(white & ~queens), Integer.bitCount(white & queens),
+                Integer.bitCount(black & ~queens), Integer.bitCount(black & queens));
+    }
+
+    // positions of the material, both sides to move
+    static long classSize(int whiteMen, int whiteQueens, int blackMen, int blackQueens) {
+        int free = MoveGenerator.SQUARES;
+        long size = 2;
+        int[] counts = {whiteMen, whiteQueens, blackMen, blackQueens};
+        for (int count : counts) {
+            size *= BINOMIAL[free][count];
+            free -= count;
+        }
+        return size;
+    }
+
+    // Pieces of every kind are ranked as a combination of the squares left free by the
+    // kinds before them: white men, white queens, black men, black queens.
+    static int index(int white, int black, int queens, boolean whiteTurn) {
+        int whiteMen = white & ~queens;
+        int whiteQueens = white & queens;
+        int blackMen = black & ~queens;
+        int blackQueens = black & queens;
+        int used = whiteMen;
+        int index = rank(whiteMen, 0);
+        index = index * BINOMIAL[MoveGenerator.SQUARES - Integer.bitCount(used)][Integer.bitCount(whiteQueens)]
+                + rank(whiteQueens, used);
+        used |= whiteQueens;
+        index = index * BINOMIAL[MoveGenerator.SQUARES - Integer.bitCount(used)][Integer.bitCount(blackMen)]
+                + rank(blackMen, used);
+        used |= blackMen;
+        index = index * BINOMIAL[MoveGenerator.SQUARES - Integer.bitCount(used)][Integer.bitCount(blackQueens)]
+                + rank(blackQueens, used);
+        return (index << 1) | (whiteTurn ? 0 : 1);
+    }
+
+    // fills position with white, black, queens and 1 if white is to move;
+    // returns false if a man stands on its promotion row, such positions are not used
+    static boolean position(int[] material, int index, int[] position) {
+        boolean whiteTurn = (index & 1) == 0;
+        index >>>= 1;
+        int[] ranks = new int[4];
+        int free = MoveGenerator.SQUARES;
+        int[] sizes = new int[4];
+        for (int i = 0; i < 4; i++) {
+            sizes[i] = BINOMIAL[free][material[i]];
+            free -= material[i];
+        }
+        for (int i = 3; i >= 0; i--) {
+            ranks[i] = index % sizes[i];
+            index /= sizes[i];
+        }
+        int used = 0;
+        int[] groups = new int[4];
+        for (int i = 0; i < 4; i++) {
+            groups[i] = unrank(ranks[i], material[i], used);
+            used |= groups[i];
+        }
+        position[0] = groups[0] | groups[1];
+        position[1] = groups[2] | groups[3];
+        position[2] = groups[1] | groups[3];
+        position[3] = whiteTurn ? 1 : 0;
+        return (groups[0] & MoveGenerator.WHITE_PROMOTION) == 0 && (groups[2] & MoveGenerator.BLACK_PROMOTION) == 0;
+    }
+
+    // rank of the combination, the squares are numbered among the squares not in used
+    private static int rank(int group, int used) {
+        int rank = 0;
+        int i = 1;
+        while (group != 0) {
+            int square = Integer.numberOfTrailingZeros(group);
+            group &= group - 1;
+            int p = square - Integer.bitCount(used & ((1 << square) - 1));
+            rank += BINOMIAL[p][i++];
+        }
+        return rank;
+    }
+
+    private static int unrank(int rank, int count, int used) {
+        int group = 0;
+        int p = MoveGenerator.SQUARES - Integer.bitCount(used);
+        for (int i = count; i >= 1; i--) {
+            p--;
+            while (BINOMIAL[p][i] > rank) {
+                p--;
+            }
+            rank -= BINOMIAL[p][i];
+            group |= 1 << freeSquare(used, p);
+        }
+        return group;
+    }
+
+    // the n-th square (from 0) which isn't in used
+    private static int freeSquare(int used, int n) {
+        for (int square = 0; square < MoveGenerator.SQUARES; square++) {
+            if ((used & (1 << square)) == 0 && n-- == 0) {
+                return square;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,339 @@
+package com.zimnicky.draughts;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Builds the endgame tablebase by retrograde analysis, material by material.
+// A material depends only on materials with fewer pieces (beats) or fewer men (promotions),
+// so they are solved in that order. Inside a material only quiet moves without a promotion
+// lead to positions of the same material. A first pass rates every position by its moves to the
+// solved materials and counts the others, then the values go back along the quiet moves taken back,
+// distance by distance: a position before a loss in d turns is won in d + 1, a position is lost
+// when all its moves are counted off as wins of the opponent.
+// usage: TablebaseGenerator pieces file [-threads n]
+public class TablebaseGenerator {
+
+    public interface ProgressListener {
+        // called on the generating thread after every material, time in ms
+        void materialSolved(String material, int positions, int wins, int losses, int longest, long time);
+    }
+
+    public static final int MAX_PIECES = 5;     // 403 MB, 6 pieces would pass the int offsets of the file
+    private static final int MAX_DISTANCE = 254;    // the values are stored in a byte
+    private static final int NONE = 0xFF;           // no win found, or the position can't be lost
+    private static final byte BEATS = -1;           // counter of a position not reached by quiet moves
+
+    private final int maxPieces;
+    private final int threads;
+    private final ArrayList<int[]> materials = new ArrayList<>();
+    private ProgressListener listener;
+    private final byte[][] tables = new byte[Tablebase.SIDE_LIMIT * Tablebase.SIDE_LIMIT * Tablebase.SIDE_LIMIT
+            * Tablebase.SIDE_LIMIT][];
+
+    // of the material being solved, by position
+    private byte[] counters;        // moves to the same material not rated yet
+    private byte[] wins;            // shortest win by a move to a solved material, NONE if there is none
+    private byte[] losses;          // longest loss by the moves to solved materials, NONE if one of them isn't lost
+
+    public TablebaseGenerator(int maxPieces, int threads) {
+        if (maxPieces < 2 || maxPieces > MAX_PIECES) {
+            throw new IllegalArgumentException("Pieces must be from 2 to " + MAX_PIECES);
+        }
+        this.maxPieces = maxPieces;
+        this.threads = Math.max(threads, 1);
+
+        // both sides have pieces; fewer pieces first, then fewer men
+        for (int pieces = 2; pieces <= maxPieces; pieces++) {
+            for (int men = 0; men <= pieces; men++) {
+                for (int whiteMen = 0; whiteMen <= men; whiteMen++) {
+                    int blackMen = men - whiteMen;
+                    for (int whiteQueens = 0; whiteQueens <= pieces - men; whiteQueens++) {
+                        int blackQueens = pieces - men - whiteQueens;
+                        if (whiteMen + whiteQueens > 0 && blackMen + blackQueens > 0) {
+                            materials.add(new int[]{whiteMen, whiteQueens, blackMen, blackQueens});
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    // value of a position of a solved material
+    private int value(int white, int black, int queens, boolean whiteTurn) {
+        if ((whiteTurn ? white : black) == 0) {
+            return 1;
+        }
+        return tables[Tablebase.classKey(white, black, queens)][Tablebase.index(white, black, queens, whiteTurn)] & 0xFF;
+    }
+
+    // rates the positions of one part of a material by their moves, every thread has its own worker
+    private class Worker implements Callable<Void> {
+        private final int[] moves = new int[MoveStack.MAX_MOVES];
+        private final int[] captures = new int[MoveStack.MAX_MOVES];
+        private final int[] position = new int[4];
+        private int[] material;
+        private int first;
+        private int last;
+
+        public Void call() {
+            for (int i = first; i < last; i++) {
+                if (!Tablebase.position(material, i, position)) {
+                    counters[i] = BEATS;
+                    wins[i] = (byte) NONE;
+                    losses[i] = (byte) NONE;
+                    continue;
+                }
+                int white = position[0];
+                int black = position[1];
+                int queens = position[2];
+                boolean whiteTurn = position[3] != 0;
+                int count = MoveGenerator.generateSequences(white, black, queens, whiteTurn, -1, moves, captures);
+                int win = NONE;
+                int loss = 0;
+                int same = 0;
+                for (int j = 0; j < count; j++) {
+                    int move = moves[j];
+                    if (!PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) {
+                        same++;
+                        continue;
+                    }
+                    int from = 1 << PackedMove.from(move);
+                    int to = 1 << PackedMove.to(move);
+                    int own = ((whiteTurn ? white : black) & ~from) | to;
+                    int opponent = (whiteTurn ? black : white) & ~captures[j];
+                    int nextQueens = queens & ~captures[j] & ~from;
+                    if ((queens & from) != 0 || PackedMove.isPromotion(move)) {
+                        nextQueens |= to;
+                    }
+                    int value = whiteTurn ? value(own, opponent, nextQueens, false) : value(opponent, own, nextQueens, true);
+                    int distance = Tablebase.getDistance(value) + 1;
+                    if (value == Tablebase.DRAW || distance > MAX_DISTANCE) {
+                        loss = NONE;
+                    } else if (Tablebase.isLoss(value)) {
+                        win = Math.min(win, distance);
+                    } else if (loss != NONE) {
+                        loss = Math.max(loss, distance);
+                    }
+                }
+                counters[i] = (count > 0 && PackedMove.isCapture(moves[0])) ? BEATS : (byte) same;
+                wins[i] = (byte) win;
+                losses[i] = (byte) (win != NONE ? NONE : loss);
+            }
+            return null;
+        }
+    }
+
+    public void generate() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker();
+        }
+        try {
+            for (int[] material : materials) {
+                long start = System.nanoTime();
+                int size = (int) Tablebase.classSize(material[0], material[1], material[2], material[3]);
+                byte[] values = new byte[size];
+                counters = new byte[size];
+                wins = new byte[size];
+                losses = new byte[size];
+
+                ArrayList<Future<Void>> results = new ArrayList<>(threads);
+                for (int t = 0; t < threads; t++) {
+                    Worker worker = workers[t];
+                    worker.material = material;
+                    worker.first = (int) ((long) size * t / threads);
+                    worker.last = (int) ((long) size * (t + 1) / threads);
+                    results.add(executor.submit(worker));
+                }
+                for (Future<Void> result : results) {
+                    result.get();
+                }
+                solve(material, values);
+                tables[Tablebase.classKey(material[0], material[1], material[2], material[3])] = values;
+
+                if (listener != null) {
+                    int wins = 0;
+                    int losses = 0;
+                    int longest = 0;
+                    for (byte value : values) {
+                        int v = value & 0xFF;
+                        if (Tablebase.isWin(v)) {
+                            wins++;
+                        } else if (Tablebase.isLoss(v)) {
+                            losses++;
+                        }
+                        longest = Math.max(longest, Tablebase.getDistance(v));
+                    }
+                    listener.materialSolved(name(material), size, wins, losses, longest,
+                            (System.nanoTime() - start) / 1000000);
+                }
+            }
+        } finally {
+            executor.shutdown();
+            counters = null;
+            wins = null;
+            losses = null;
+        }
+    }
+
+    // Positions rated at a distance are waiting in their list until it is reached: the shortest win
+    // of a position isn't known before the shorter distances are done.
+    private void solve(int[] material, byte[] values) {
+        IntList[] waiting = new IntList[MAX_DISTANCE + 1];
+        for (int d = 0; d <= MAX_DISTANCE; d++) {
+            waiting[d] = new IntList();
+        }
+        for (int i = 0; i < values.length; i++) {
+            int win = wins[i] & 0xFF;
+            int loss = losses[i] & 0xFF;
+            if (win != NONE) {
+                waiting[win].add(i);
+            } else if (loss != NONE && counters[i] <= 0) {
+                waiting[loss].add(i);
+            }
+        }
+
+        int[] position = new int[4];
+        IntList current = new IntList();
+        for (int d = 0; d <= MAX_DISTANCE; d++) {
+            IntList next = new IntList();
+            for (int k = 0; k < waiting[d].size; k++) {
+                int i = waiting[d].items[k];
+                if (values[i] == 0) {
+                    values[i] = (byte) (d + 1);
+                    current.add(i);
+                }
+            }
+            waiting[d] = null;
+            if (d == MAX_DISTANCE) {
+                break;
+            }
+            for (int k = 0; k < current.size; k++) {
+                Tablebase.position(material, current.items[k], position);
+                // the opponent of the side to move made the last move
+                boolean whiteMoved = position[3] == 0;
+                int own = whiteMoved ? position[0] : position[1];
+                int occupied = position[0] | position[1];
+                int queens = position[2];
+                int backDir = whiteMoved ? 0 : 2;   // white men go to row 0, they come from row 7
+                for (int pieces = own; pieces != 0; pieces &= pieces - 1) {
+                    int square = Integer.numberOfTrailingZeros(pieces);
+                    int bit = 1 << square;
+                    int sources = 0;
+                    if ((queens & bit) != 0) {
+                        for (int dir = 0; dir < 4; dir++) {
+                            sources |= MoveGenerator.freeRay(square, dir, occupied);
+                        }
+                    } else {
+                        sources = (MoveGenerator.shift(bit, backDir) | MoveGenerator.shift(bit, backDir + 1)) & ~occupied;
+                    }
+                    for (; sources != 0; sources &= sources - 1) {
+                        int from = sources & -sources;
+                        int before = (own & ~bit) | from;
+                        int beforeQueens = ((queens & bit) != 0) ? (queens & ~bit) | from : queens;
+                        int i = whiteMoved ? Tablebase.index(before, position[1], beforeQueens, true)
+                                : Tablebase.index(position[0], before, beforeQueens, false);
+                        if (values[i] != 0 || counters[i] == BEATS) {
+                            continue;
+                        }
+                        if ((d & 1) == 0) {
+                            values[i] = (byte) (d + 2);     // won by the move to a loss
+                            next.add(i);
+                        } else if (--counters[i] == 0 && (losses[i] & 0xFF) != NONE) {
+                            int loss = Math.max(losses[i] & 0xFF, d + 1);
+                            if (loss == d + 1) {
+                                values[i] = (byte) (d + 2);
+                                next.add(i);
+                            } else {
+                                waiting[loss].add(i);
+                            }
+                        }
+                    }
+                }
+            }
+            current = next;
+        }
+    }
+
+    private static class IntList {
+        int[] items = new int[16];
+        int size;
+
+        void add(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+    }
+
+    public void write(File file) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(Tablebase.MAGIC);
+            output.writeInt(maxPieces);
+            output.writeInt(materials.size());
+            long offset = Tablebase.HEADER_SIZE + (long) materials.size() * Tablebase.CLASS_ENTRY_SIZE;
+            for (int[] material : materials) {
+                byte[] values = tables[Tablebase.classKey(material[0], material[1], material[2], material[3])];
+                if (offset + values.length > Integer.MAX_VALUE) {
+                    throw new IOException("Tablebase is too big");
+                }
+                for (int count : material) {
+                    output.writeByte(count);
+                }
+                output.writeInt(values.length);
+                output.writeInt((int) offset);
+                offset += values.length;
+            }
+            for (int[] material : materials) {
+                output.write(tables[Tablebase.classKey(material[0], material[1], material[2], material[3])]);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private static String name(int[] material) {
+        return material[0] + "m" + material[1] + "k-" + material[2] + "m" + material[3] + "k";
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: TablebaseGenerator pieces file [-threads n]");
+            return;
+        }
+        int pieces = Integer.parseInt(args[0]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 3 && args[2].equals("-threads")) {
+            threads = Integer.parseInt(args[3]);
+        }
+        long start = System.nanoTime();
+        TablebaseGenerator generator = new TablebaseGenerator(pieces, threads);
+        generator.setProgressListener(new ProgressListener() {
+            @Override
+            public void materialSolved(String material, int positions, int wins, int losses, int longest, long time) {
+                System.out.printf("%s: %d positions, %d wins, %d losses, longest %d, %d ms%n", material, positions,
+                        wins, losses, longest, time);
+            }
+        });
+        generator.generate();
+        generator.write(new File(args[1]));
+        System.out.printf("done in %d s%n", (System.nanoTime() - start) / 1000000000L);
+    }
+}
@@ -0,0 +1,109 @@
+package com.zimnicky.draughts;
+
+// Fixed size hash table of searched positions, shared by search threads without locks.
+// An entry is two longs: the data word and the position hash xor-ed with it, so an entry
+// torn by a concurrent store does not verify and is read as a miss.
+// Entries are grouped in buckets of two: the first slot keeps the deepest entry of the
+// current search, the second one is always replaced.
+//  data bits 0-16   best move (packed)
+//            17-18  bound
+//            19-25  depth
+//            26-31  age
+//            32-63  score
+public class TranspositionTable {
+
+    public static final long MISS = 0;
+
+    public static final int UPPER = 1;  // score <= stored score
+    public static final int LOWER = 2;  // score >= stored score
+    public static final int EXACT = 3;
+
+    private static final int ENTRY_SIZE = 16;  // bytes
+    private static final int MAX_DEPTH = 127;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private volatile int age;
+
+    public TranspositionTable(int sizeMb) {
+        long entries = Math.max(2, ((long) sizeMb << 20) / ENTRY_SIZE);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    // called before every new search, so entries of previous searches are replaced first
+    public void newSearch() {
+        age = (age + 1) & 63;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            data[i] = 0;
+        }
+        age = 0;
+    }
+
+    // returns the data word of the position, or MISS
+    public long probe(long hash) {
+        int i = (int) hash & mask & ~1;
+        long d = data[i];
+        if ((keys[i] ^ d) == hash && d != MISS) {
+            return d;
+        }
+        d = data[i + 1];
+        if ((keys[i + 1] ^ d) == hash && d != MISS) {
+            return d;
+        }
+        return MISS;
+    }
+
+    public void store(long hash, int move, int score, int bound, int depth) {
+        int i = (int) hash & mask & ~1;
+        int currentAge = age;
+        long old = data[i];
+        boolean same = (keys[i] ^ old) == hash;
+        if (!same && old != MISS && getAge(old) == currentAge && getDepth(old) > depth) {
+            i++;    // keep the deeper entry, use the always-replace slot
+            old = data[i];
+            same = (keys[i] ^ old) == hash;
+        }
+        if (same && move == PackedMove.NONE) {
+            move = getMove(old);
+        }
+        long d = (move & 0x1FFFFL)
+                | ((long) bound << 17)
+                | ((long) Math.min(Math.max(depth, 0), MAX_DEPTH) << 19)
+                | ((long) currentAge << 26)
+                | ((long) score << 32);
+        data[i] = d;
+        keys[i] = hash ^ d;
+    }
+
+    public static int getMove(long data) {
+        return (int) data & 0x1FFFF;
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> 17) & 3;
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> 19) & MAX_DEPTH;
+    }
+
+    public static int getScore(long data) {
+        return (int) (data >> 32);
+    }
+
+    private static int getAge(long data) {
+        return (int) (data >>> 26) & 63;
+    }
+}
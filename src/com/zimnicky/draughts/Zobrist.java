@@ -0,0 +1,44 @@
+package com.zimnicky.draughts;
+
+// Random keys of the position hash. They are generated from a fixed seed,
+// so hashes are the same in every run and can be stored in files.
+final class Zobrist {
+
+    static final int WHITE_MAN = 0;
+    static final int WHITE_QUEEN = 1;
+    static final int BLACK_MAN = 2;
+    static final int BLACK_QUEEN = 3;
+
+    static final long[][] PIECES = new long[4][MoveGenerator.SQUARES];
+    static final long[] CONTINUATION = new long[MoveGenerator.SQUARES];  // piece which has to go on beating
+    static final long BLACK_TURN;
+
+    private static long seed = 0x5DEECE66DL;
+
+    // splitmix64
+    private static long next() {
+        seed += 0x9E3779B97F4A7C15L;
+        long z = seed;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static {
+        for (int piece = 0; piece < 4; piece++) {
+            for (int sq = 0; sq < MoveGenerator.SQUARES; sq++) {
+                PIECES[piece][sq] = next();
+            }
+        }
+        for (int sq = 0; sq < MoveGenerator.SQUARES; sq++) {
+            CONTINUATION[sq] = next();
+        }
+        BLACK_TURN = next();
+    }
+
+    private Zobrist() {}
+
+    static int piece(boolean white, boolean queen) {
+        return (white ? 0 : 2) | (queen ? 1 : 0);
+    }
+}
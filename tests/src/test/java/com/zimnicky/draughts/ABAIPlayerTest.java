@@ -0,0 +1,136 @@
+package com.zimnicky.draughts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ABAIPlayerTest {
+
+    private static final String MIDDLE_GAME = "W:W17,18,21,22,23,25,26,27,29,30,31,32:B1,2,3,4,5,6,7,9,10,12,13,14";
+
+    private static boolean isLegal(Board board, int move, int captured) {
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                board.isWhiteTurn(), board.getContinuation(), moves, captures);
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == move && captures[i] == captured) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertLegal(Board board, ABAIPlayer player, int move) {
+        assertTrue(PackedMove.toString(move), isLegal(board, move, player.resultCaptured));
+    }
+
+    // the depth can't be reached, the search is stopped by the budget after the first iteration
+    @Test
+    public void timeLimit() {
+        Board board = Board.fromFen(MIDDLE_GAME);
+        ABAIPlayer player = new ABAIPlayer((byte) 60);
+        player.setTimeLimit(100);
+        long start = System.nanoTime();
+        int move = player.think(board);
+        long time = (System.nanoTime() - start) / 1000000;
+        assertLegal(board, player, move);
+        assertTrue(time + " ms", time < 100 + 400);
+    }
+
+    @Test
+    public void nodeLimit() {
+        Board board = Board.fromFen(MIDDLE_GAME);
+        ABAIPlayer player = new ABAIPlayer((byte) 60);
+        player.setNodeLimit(20000);
+        int move = player.think(board);
+        assertLegal(board, player, move);
+        long nodes = player.getNodes();
+        assertTrue(nodes + " nodes", nodes >= 20000 && nodes <= 20000 + ABAIPlayer.CHECK_INTERVAL + 1);
+    }
+
+    // the helpers share the table, the move comes from the main thread
+    @Test
+    public void parallelSearch() {
+        String[] fens = {MIDDLE_GAME, "W:WK21,K30,18,27:B5,6,10,13,14,15,23", "B:W9,10,11,19,22,26,K32:BK1,K4,14,15"};
+        ABAIPlayer player = new ABAIPlayer((byte) 8);
+        player.setThreads(3);
+        for (String fen : fens) {
+            Board board = Board.fromFen(fen);
+            int move = player.think(board);
+            assertLegal(board, player, move);
+            assertTrue(player.getLastStatistics().nodes > 0);
+        }
+    }
+
+    // pondering has no budget, it runs until it's stopped; the next search of the position after
+    // the opponent's reply keeps its own budget
+    @Test
+    public void stopPondering() throws InterruptedException {
+        Board board = Board.fromFen(MIDDLE_GAME);
+        String fen = board.toFen();
+        long hash = board.getHash();
+        ABAIPlayer player = new ABAIPlayer((byte) 60);
+        player.setNodeLimit(20000);
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                board.isWhiteTurn(), -1, moves, captures);
+        for (int i = 0; i < n; i++) {
+            player.startPondering(board);
+            Thread.sleep(100);
+            player.stopPondering();
+            assertEquals(fen, board.toFen());
+            assertEquals(hash, board.getHash());
+
+            Board reply = new Board(board);
+            reply.makeSequence(moves[i], captures[i]);
+            int move = player.think(reply);
+            assertLegal(reply, player, move);
+            long nodes = player.getNodes();
+            assertTrue(nodes + " nodes", nodes <= 20000 + ABAIPlayer.CHECK_INTERVAL + 1);
+        }
+    }
+
+    // the engines think on their own threads and answer through the callback, the game's
+    // executor only applies the moves
+    @Test
+    public void gameOnExecutor() throws InterruptedException {
+        ABAIPlayer first = new ABAIPlayer((byte) 3);
+        ABAIPlayer second = new ABAIPlayer((byte) 3);
+        second.setPonder(true);
+        Game game = new Game(first, second, false);
+        game.setMoveLimit(100);
+        final CountDownLatch over = new CountDownLatch(1);
+        final int[] moves = new int[1];
+        final int[] result = {-1};
+        game.addListener(new Game.GameListener() {
+            public void moveApplied(Game game, Game.Move move, BoardSnapshot before, BoardSnapshot after) {
+                moves[0]++;
+            }
+
+            public void turnChanged(Game game, int player, Game.Move lastMove) {
+            }
+
+            public void gameOver(Game game, int winner) {
+                result[0] = winner;
+                over.countDown();
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        game.start(executor);
+        assertTrue(over.await(60, TimeUnit.SECONDS));
+        second.stopPondering();
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(moves[0] > 0);
+        assertTrue(result[0] >= 0);
+        assertEquals(result[0], game.getWinner());
+    }
+}
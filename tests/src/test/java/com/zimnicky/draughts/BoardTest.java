@@ -0,0 +1,110 @@
+package com.zimnicky.draughts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BoardTest {
+
+    private static final int GAMES = 300;
+
+    // the same position set up from scratch
+    private static Board fresh(Board board) {
+        Board fresh = new Board();
+        fresh.set(board.getWhiteCells(), board.getBlackCells(), board.getQueens(), board.isWhiteTurn());
+        fresh.setTurn(board.getTurn(), board.getContinuation());
+        return fresh;
+    }
+
+    private static void assertIncremental(Board board) {
+        Board fresh = fresh(board);
+        assertEquals(board.toFen(), fresh.getHash(), board.getHash());
+        assertEquals(board.toFen(), fresh.getPieceSquareScore(), board.getPieceSquareScore());
+    }
+
+    // random games hop by hop, every hop and its undo keep the hash and the piece-square score
+    @Test
+    public void makeAndUndoMove() {
+        Random random = new Random(1);
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] undos = new int[1000];
+        long[] hashes = new long[1000];
+        int[] scores = new int[1000];
+        int multipleBeats = 0;
+        int promotionsInBeats = 0;
+        for (int g = 0; g < GAMES; g++) {
+            Board board = new Board();
+            int count = 0;
+            while (count < undos.length) {
+                int n = MoveGenerator.generate(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                        board.isWhiteTurn(), board.getContinuation(), moves);
+                if (n == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(n)];
+                if (board.getContinuation() >= 0) {
+                    multipleBeats++;
+                }
+                hashes[count] = board.getHash();
+                scores[count] = board.getPieceSquareScore();
+                undos[count++] = board.makeMove(move);
+                if (PackedMove.isPromotion(move) && board.getContinuation() >= 0) {
+                    promotionsInBeats++;
+                }
+                assertIncremental(board);
+            }
+            while (count > 0) {
+                board.undoMove(undos[--count]);
+                assertEquals(hashes[count], board.getHash());
+                assertEquals(scores[count], board.getPieceSquareScore());
+                assertIncremental(board);
+            }
+        }
+        assertTrue(multipleBeats > 0);
+        assertTrue(promotionsInBeats > 0);
+    }
+
+    // the same with whole beat sequences
+    @Test
+    public void makeAndUndoSequence() {
+        Random random = new Random(2);
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        long[] undos = new long[1000];
+        int[] captured = new int[1000];
+        long[] hashes = new long[1000];
+        int[] scores = new int[1000];
+        int multipleBeats = 0;
+        for (int g = 0; g < GAMES; g++) {
+            Board board = new Board();
+            int count = 0;
+            while (count < undos.length) {
+                int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(),
+                        board.getQueens(), board.isWhiteTurn(), -1, moves, captures);
+                if (n == 0) {
+                    break;
+                }
+                int k = random.nextInt(n);
+                if (Integer.bitCount(captures[k]) > 1) {
+                    multipleBeats++;
+                }
+                hashes[count] = board.getHash();
+                scores[count] = board.getPieceSquareScore();
+                captured[count] = captures[k];
+                undos[count++] = board.makeSequence(moves[k], captures[k]);
+                assertIncremental(board);
+            }
+            while (count > 0) {
+                count--;
+                board.undoSequence(undos[count], captured[count]);
+                assertEquals(hashes[count], board.getHash());
+                assertEquals(scores[count], board.getPieceSquareScore());
+                assertIncremental(board);
+            }
+        }
+        assertTrue(multipleBeats > 0);
+    }
+}
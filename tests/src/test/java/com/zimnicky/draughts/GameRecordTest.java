@@ -0,0 +1,140 @@
+package com.zimnicky.draughts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GameRecordTest {
+
+    private static final int GAMES = 200;
+
+    // random games, some of them from a position after random moves, with every kind of result
+    private static ArrayList<GameRecord> randomGames() {
+        Random random = new Random(1);
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        long[] paths = new long[MoveStack.MAX_MOVES];
+        ArrayList<GameRecord> records = new ArrayList<>();
+        for (int g = 0; g < GAMES; g++) {
+            Board start = new Board();
+            if (g % 4 == 1) {
+                for (int i = 10 + random.nextInt(20); i > 0; i--) {
+                    int n = MoveGenerator.generateSequences(start.getWhiteCells(), start.getBlackCells(),
+                            start.getQueens(), start.isWhiteTurn(), -1, moves, captures);
+                    if (n == 0) {
+                        break;
+                    }
+                    int k = random.nextInt(n);
+                    start.makeSequence(moves[k], captures[k]);
+                }
+            }
+            GameRecord record = new GameRecord(start);
+            record.setTag("Event", "round \"trip\" \\ " + g);
+            record.setTag("Round", Integer.toString(g));
+            Board board = record.position();
+            for (int turn = 0; turn < 150; turn++) {
+                int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(),
+                        board.getQueens(), board.isWhiteTurn(), -1, moves, captures, paths);
+                if (n == 0) {
+                    break;
+                }
+                int k = random.nextInt(n);
+                record.addTurn(moves[k], captures[k], paths[k]);
+            }
+            record.setWinner(g % 4 - 1);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static void assertSame(GameRecord expected, GameRecord actual) {
+        Board start = expected.getStart();
+        assertEquals(start.toFen(), actual.getStart().toFen());
+        assertEquals(expected.getWinner(), actual.getWinner());
+        assertEquals(expected.getTags(), actual.getTags());
+        assertEquals(expected.getTurnCount(), actual.getTurnCount());
+        for (int i = 0; i < expected.getTurnCount(); i++) {
+            assertEquals(expected.getTurn(i), actual.getTurn(i));
+            assertEquals(expected.getCaptured(i), actual.getCaptured(i));
+            assertEquals(expected.getPath(i), actual.getPath(i));
+        }
+    }
+
+    private static String toPdn(GameRecord... records) throws IOException {
+        StringWriter text = new StringWriter();
+        PdnWriter writer = new PdnWriter(text);
+        for (GameRecord record : records) {
+            writer.write(record);
+        }
+        writer.flush();
+        return text.toString();
+    }
+
+    @Test
+    public void pdnRoundTrip() throws IOException {
+        ArrayList<GameRecord> records = randomGames();
+        String text = toPdn(records.toArray(new GameRecord[records.size()]));
+        PdnReader reader = new PdnReader(new StringReader(text));
+        for (GameRecord record : records) {
+            assertSame(record, reader.read());
+        }
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        ArrayList<GameRecord> records = randomGames();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(bytes);
+        for (GameRecord record : records) {
+            writer.write(record);
+        }
+        writer.flush();
+        GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int i = 0; i < records.size(); i++) {
+            if (i % 3 == 2) {
+                assertTrue(reader.skip());
+            } else {
+                assertSame(records.get(i), reader.read());
+            }
+        }
+        assertNull(reader.read());
+    }
+
+    // the queen on b8 beats c7 and f6 over d6 or over e5, the path played is kept
+    @Test
+    public void pathOfBeatSequence() throws IOException {
+        Board start = PdnReader.fromFen("W:WKb8:Bc7,Kf6,f4");
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        long[] paths = new long[MoveStack.MAX_MOVES];
+        int n = MoveGenerator.generateSequences(start.getWhiteCells(), start.getBlackCells(), start.getQueens(),
+                start.isWhiteTurn(), -1, moves, captures, paths);
+        GameRecord record = new GameRecord(start);
+        for (int i = 0; i < n; i++) {
+            if (MoveGenerator.pathSquare(paths[i], 0) == PdnReader.square("e5")
+                    && PackedMove.to(moves[i]) == PdnReader.square("g3")) {
+                record.addTurn(moves[i], captures[i], paths[i]);
+            }
+        }
+        assertEquals(1, record.getTurnCount());
+
+        String text = toPdn(record);
+        assertTrue(text, text.contains("[FEN \"W:WKb8:Bc7,Kf6,f4\"]"));
+        assertTrue(text, text.contains("1. b8:e5:g3 *"));
+        GameRecord read = new PdnReader(new StringReader(text)).read();
+        assertSame(record, read);
+        Game.Move hop = read.getMoves().get(0);
+        assertEquals(PdnReader.square("e5"), MoveGenerator.square(hop.getDistRow(), hop.getDistCol()));
+    }
+}
@@ -0,0 +1,71 @@
+package com.zimnicky.draughts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LegalMovesTest {
+
+    private static final int GAMES = 30;
+
+    // random games hop by hop; at every turn and every hop of a beat sequence LegalMoves.check
+    // takes the same pairs of cells as Game.canMove with the compulsory beats of the other pieces
+    @Test
+    public void checkMatchesRules() {
+        Game rules = new Game();
+        Random random = new Random(1);
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int continuations = 0;
+        for (int g = 0; g < GAMES; g++) {
+            Board board = new Board();
+            Game.Move lastMove = null;
+            for (int turn = 0; turn < 300; turn++) {
+                LegalMoves legal = new LegalMoves(board, board.getTurn(), board.getContinuation());
+                ArrayList<Game.Move> expected = Perft.movesByRules(rules, board, board.getTurn(), lastMove);
+                assertEquals(board.toFen(), expected.size(), legal.getCount());
+                if (board.getContinuation() >= 0) {
+                    continuations++;
+                }
+                for (int i = 0; i < 8; i++) {
+                    for (int j = 0; j < 8; j++) {
+                        for (int k = 0; k < 8; k++) {
+                            for (int l = 0; l < 8; l++) {
+                                Game.Move move = new Game.Move(i, j, k, l);
+                                boolean allowed = legal.check(move);
+                                assertEquals(board.toFen() + " " + move, contains(expected, move), allowed);
+                                if (allowed) {
+                                    assertEquals(expected.get(0).getResult(), move.getResult());
+                                }
+                            }
+                        }
+                    }
+                }
+
+                int n = MoveGenerator.generate(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                        board.isWhiteTurn(), board.getContinuation(), moves);
+                if (n == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(n)];
+                lastMove = PackedMove.toMove(move);
+                lastMove.setResult(PackedMove.isCapture(move) ? Game.MoveResult.BEAT : Game.MoveResult.MOVED);
+                board.makeMove(move);
+            }
+        }
+        assertTrue(continuations > 0);
+    }
+
+    private static boolean contains(ArrayList<Game.Move> moves, Game.Move move) {
+        for (Game.Move m : moves) {
+            if (m.getStartRow() == move.getStartRow() && m.getStartCol() == move.getStartCol()
+                    && m.getDistRow() == move.getDistRow() && m.getDistCol() == move.getDistCol()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
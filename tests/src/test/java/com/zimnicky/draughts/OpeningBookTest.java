@@ -0,0 +1,75 @@
+package com.zimnicky.draughts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OpeningBookTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    // every position of the book is found in the written file with the moves the builder stored:
+    // the heaviest one without a random, only stored moves and all of them with one
+    @Test
+    public void buildAndProbe() throws Exception {
+        OpeningBookBuilder builder = new OpeningBookBuilder((byte) 3, 40);
+        builder.build(new Board(), 4);
+        File file = folder.newFile("book.bin");
+        builder.write(file);
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(builder.getCount(), book.getCount());
+
+        // the entries are sorted by hash and by weight, heaviest first
+        HashMap<Long, ArrayList<long[]>> stored = new HashMap<>();
+        for (long[] entry : builder.getEntries()) {
+            if (!stored.containsKey(entry[0])) {
+                stored.put(entry[0], new ArrayList<long[]>());
+            }
+            stored.get(entry[0]).add(entry);
+        }
+        assertTrue(stored.size() > 1);
+
+        ArrayList<Board> positions = new ArrayList<>();
+        HashSet<Long> reached = new HashSet<>();
+        positions.add(new Board());
+        reached.add(new Board().getHash());
+        Random random = new Random(1);
+        for (int p = 0; p < positions.size(); p++) {
+            Board position = positions.get(p);
+            ArrayList<long[]> entries = stored.get(position.getHash());
+            if (entries == null) {
+                assertEquals(position.toFen(), PackedMove.NONE, book.choose(position, null));
+                continue;
+            }
+            assertEquals(position.toFen(), (int) entries.get(0)[1], book.choose(position, null));
+            HashSet<Integer> moves = new HashSet<>();
+            for (long[] entry : entries) {
+                moves.add((int) entry[1]);
+                Board next = new Board(position);
+                next.makeMove((int) entry[1]);
+                if (reached.add(next.getHash())) {
+                    positions.add(next);
+                }
+            }
+            HashSet<Integer> chosen = new HashSet<>();
+            for (int i = 0; i < 2000; i++) {
+                int move = book.choose(position, random);
+                assertTrue(position.toFen(), moves.contains(move));
+                chosen.add(move);
+            }
+            assertEquals(position.toFen(), moves, chosen);
+        }
+        assertTrue(reached.containsAll(stored.keySet()));
+        assertEquals(PackedMove.NONE, book.choose(Board.fromFen("W:WK21,K30,18,27:B5,6,10,13,14,15,23"), null));
+    }
+}
@@ -0,0 +1,84 @@
+package com.zimnicky.draughts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PerftTest {
+
+    private static long perft(Board position, int depth, boolean sequences) {
+        return new Perft(depth, sequences).count(new SearchBoard(position, depth + 1), depth);
+    }
+
+    @Test
+    public void startPosition() {
+        assertEquals(3777555, perft(new Board(), 9, false));
+    }
+
+    // a whole beat sequence is one ply
+    @Test
+    public void startPositionSequences() {
+        assertEquals(929984, perft(new Board(), 8, true));
+    }
+
+    // every hop is a ply, so a position inside a beat sequence is counted too
+    @Test
+    public void divideSumsToPerft() throws Exception {
+        long[] counts = Perft.divide(new Board(), 6, 2, new int[MoveStack.MAX_MOVES], false);
+        long nodes = 0;
+        for (long count : counts) {
+            nodes += count;
+        }
+        assertEquals(7, counts.length);
+        assertEquals(perft(new Board(), 6, false), nodes);
+    }
+
+    // the generator against Game.canMove, with queens and multiple beats
+    @Test
+    public void generatorMatchesRules() {
+        String[] fens = {"W:WK21,K30,18,27:B5,6,10,13,14,15,23", "B:W9,10,11,19,22,26,K32:BK1,K4,14,15",
+                "W:WK29:B6,7,14,15,22,23"};
+        for (String fen : fens) {
+            Board position = Board.fromFen(fen);
+            for (boolean sequences : new boolean[]{false, true}) {
+                long expected = Perft.countWithGame(new Game(), position, position.getTurn(), null, 5, sequences);
+                assertEquals(fen, expected, perft(position, 5, sequences));
+            }
+        }
+    }
+
+    // ABAIPlayer plays a chosen beat sequence hop by hop, every sequence has to split
+    @Test
+    public void sequencesSplitIntoHops() {
+        Random random = new Random(3);
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        int[] hops = new int[MoveGenerator.SQUARES];
+        for (int g = 0; g < 300; g++) {
+            Board board = new Board();
+            while (true) {
+                int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(),
+                        board.getQueens(), board.isWhiteTurn(), -1, moves, captures);
+                if (n == 0) {
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    int count = MoveGenerator.hops(board, moves[i], captures[i], hops);
+                    assertTrue(PackedMove.toString(moves[i]), count > 0);
+                    Board expected = new Board(board);
+                    expected.makeSequence(moves[i], captures[i]);
+                    Board played = new Board(board);
+                    for (int j = 0; j < count; j++) {
+                        played.makeMove(hops[j]);
+                    }
+                    assertEquals(expected.toFen(), played.toFen());
+                }
+                int k = random.nextInt(n);
+                board.makeSequence(moves[k], captures[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.zimnicky.draughts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SearchTest {
+
+    private static final int DEPTH = 4;
+
+    // rating for the side to move by plain negamax over whole beat sequences; below the depth
+    // the beats are played out and a position without them takes the static rating, as in quiescence
+    private static int negamax(Board board, int depth, int ply) {
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        int count = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(), board.getQueens(),
+                board.isWhiteTurn(), -1, moves, captures);
+        if (count == 0) {
+            return -ABAIPlayer.WIN + ply;
+        }
+        if (depth <= 0 && !PackedMove.isCapture(moves[0])) {
+            int rating = Evaluation.evaluate(board);
+            return board.isWhiteTurn() ? rating : -rating;
+        }
+        int best = -ABAIPlayer.INFINITY;
+        for (int i = 0; i < count; i++) {
+            Board next = new Board(board);
+            next.makeSequence(moves[i], captures[i]);
+            best = Math.max(best, -negamax(next, depth - 1, ply + 1));
+        }
+        return best;
+    }
+
+    private static ArrayList<Board> positions() {
+        ArrayList<Board> positions = new ArrayList<>();
+        positions.add(new Board());
+        positions.add(Board.fromFen("W:WK21,K30,18,27:B5,6,10,13,14,15,23"));
+        positions.add(Board.fromFen("B:W9,10,11,19,22,26,K32:BK1,K4,14,15"));
+        Random random = new Random(1);
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        while (positions.size() < 12) {
+            Board board = new Board();
+            for (int i = 6 + random.nextInt(30); i > 0; i--) {
+                int n = MoveGenerator.generateSequences(board.getWhiteCells(), board.getBlackCells(),
+                        board.getQueens(), board.isWhiteTurn(), -1, moves, captures);
+                if (n == 0) {
+                    break;
+                }
+                int k = random.nextInt(n);
+                board.makeSequence(moves[k], captures[k]);
+            }
+            positions.add(board);
+        }
+        return positions;
+    }
+
+    // alpha-beta with the transposition table and move ordering only gives the same rating
+    @Test
+    public void withoutPruningEqualsNegamax() {
+        for (Board position : positions()) {
+            ABAIPlayer player = new ABAIPlayer((byte) DEPTH);
+            player.setLateMoveReductions(false);
+            player.setFutilityPruning(false);
+            player.setRazoring(false);
+            for (byte depth = 1; depth <= DEPTH; depth++) {
+                assertEquals(position.toFen() + " depth " + depth, negamax(position, depth, 0),
+                        player.evaluate(position, depth));
+            }
+        }
+    }
+
+    // shots: a quiet move gives a man away, the beat it forces opens a multiple beat back;
+    // all the pruning finds the move and the rating of plain negamax
+    @Test
+    public void withPruningFindsShots() {
+        String[] fens = {"W:W17,18,20,21,22,25,26,29,31,32:B1,4,5,6,7,8,11,13,16,19",
+                "B:W5,18,19,22,23,24,25,26,28,30:B1,3,6,7,8,10,11,12,13",
+                "W:W17,20,25,27,28,29,30,31,32:B1,2,4,5,8,9,10,11,12,19",
+                "B:W15,17,19,21,22,27,28,29,30,32:B1,3,4,5,6,8,9,12,13"};
+        byte depth = 6;
+        int[] moves = new int[MoveStack.MAX_MOVES];
+        int[] captures = new int[MoveStack.MAX_MOVES];
+        for (String fen : fens) {
+            Board position = Board.fromFen(fen);
+            int count = MoveGenerator.generateSequences(position.getWhiteCells(), position.getBlackCells(),
+                    position.getQueens(), position.isWhiteTurn(), -1, moves, captures);
+            int best = -ABAIPlayer.INFINITY;
+            int bestMove = PackedMove.NONE;
+            for (int i = 0; i < count; i++) {
+                Board next = new Board(position);
+                next.makeSequence(moves[i], captures[i]);
+                int rating = -negamax(next, depth - 1, 1);
+                if (rating > best) {
+                    best = rating;
+                    bestMove = moves[i];
+                }
+            }
+            assertTrue(fen, !PackedMove.isCapture(bestMove));
+
+            ABAIPlayer player = new ABAIPlayer(depth);
+            assertTrue(player.isLateMoveReductions() && player.isFutilityPruning() && player.isRazoring());
+            assertEquals(fen, PackedMove.toString(bestMove), PackedMove.toString(player.think(position)));
+            assertEquals(fen, best, new ABAIPlayer(depth).evaluate(position, depth));
+        }
+    }
+
+    // A node far below the window is razored only when none of its moves followed by the beats
+    // reaches the window. Here the side to move is behind but has a shot, so the node isn't cut:
+    // with razoring the null window search fails high as it does without.
+    @Test
+    public void razoringVerifiesShots() {
+        String[] fens = {"B:W12,18,19,21,25,26,27,28,29,30,32:B1,3,4,5,6,7,8,9,10,11",
+                "W:W17,19,20,21,25,26,27,28,29,30,31,32:B2,3,4,5,6,7,8,9,10,14",
+                "W:W21,22,23,24,25,26,28,29,31,32:B1,2,3,4,5,7,8,9,12,13,15,16"};
+        int margin = 100;
+        for (String fen : fens) {
+            Board position = Board.fromFen(fen);
+            int rating = Evaluation.evaluate(position);
+            int lowerBound = (position.isWhiteTurn() ? rating : -rating) + margin;
+            int[] values = new int[2];
+            for (int razoring = 0; razoring < 2; razoring++) {
+                ABAIPlayer player = new ABAIPlayer((byte) 3);
+                player.setLateMoveReductions(false);
+                player.setFutilityPruning(false);
+                player.setRazoring(razoring == 1);
+                player.setRazorMargin(margin);
+                values[razoring] = player.search(new SearchBoard(position, ABAIPlayer.MAX_PLY),
+                        (byte) player.getRazorDepth(), 1, lowerBound, lowerBound + 1);
+            }
+            assertTrue(fen, values[0] > lowerBound);
+            assertEquals(fen, values[0], values[1]);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.zimnicky.draughts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TablebaseTest {
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Tablebase tablebase;
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        File file = folder.newFile("3.dtb");
+        TablebaseGenerator generator = new TablebaseGenerator(3, 1);
+        generator.generate();
+        generator.write(file);
+        tablebase = Tablebase.open(file);
+    }
+
+    private static int probe(String fen) {
+        return tablebase.probe(PdnReader.fromFen(fen));
+    }
+
+    @Test
+    public void noMovesIsLost() {
+        int value = probe("W:Wa1:Bb2,c3");
+        assertTrue(Tablebase.isLoss(value));
+        assertEquals(0, Tablebase.getDistance(value));
+    }
+
+    @Test
+    public void lastPieceBeaten() {
+        int value = probe("W:WKb8:Bc7");
+        assertTrue(Tablebase.isWin(value));
+        assertEquals(1, Tablebase.getDistance(value));
+    }
+
+    // the queen in the corner can only go along the long diagonal, where the other one beats it
+    @Test
+    public void queenTrappedInCorner() {
+        for (String fen : new String[]{"W:WKa1:BKh8", "B:WKa1:BKh8"}) {
+            int value = probe(fen);
+            assertTrue(fen, Tablebase.isLoss(value));
+            assertEquals(fen, 2, Tablebase.getDistance(value));
+        }
+    }
+
+    // a queen on the long diagonal holds against two
+    @Test
+    public void longDiagonalDraw() {
+        assertEquals(Tablebase.DRAW, probe("W:WKc1,Ke1:BKh8"));
+    }
+
+    @Test
+    public void colorsAreSymmetric() {
+        assertEquals(probe("W:Wc3:Bf8"), probe("B:Wc1:Bf6"));
+    }
+
+    @Test
+    public void notInTablebase() {
+        assertEquals(Tablebase.NOT_FOUND, probe("W:Wa1,c1:Bb8,d8"));
+        assertEquals(Tablebase.NOT_FOUND, tablebase.probe(new Board()));
+    }
+}